@@ -18,6 +18,7 @@ package com.github.black.crypto;
 
 import com.github.black.crypto.digests.SM2Digest;
 import com.github.black.crypto.digests.SM3Digest;
+import com.github.black.crypto.mac.HmacSM3;
 
 import java.security.Provider;
 
@@ -28,11 +29,11 @@ public class GMProvider extends Provider {
 
     public GMProvider() {
         super("GM", 1.0, "GM Security Provider v1.0 By Mr.Black");
-        String sm2 = SM2Digest.class.getName();
-        super.put("MessageDigest.SM2", sm2);
-        super.put("Alg.Alias.MessageDigest.1.2.156.10197.1.301", sm2);
-        String sm3 = SM3Digest.class.getName();
-        super.put("MessageDigest.SM3", sm3);
-        super.put("Alg.Alias.MessageDigest.1.2.156.10197.1.401", sm3);
+        super.put("MessageDigest.SM2", SM2Digest.class.getName());
+        super.put("Alg.Alias.MessageDigest.1.2.156.10197.1.301", "SM2");
+        super.put("MessageDigest.SM3", SM3Digest.class.getName());
+        super.put("Alg.Alias.MessageDigest.1.2.156.10197.1.401", "SM3");
+        super.put("Mac.HmacSM3", HmacSM3.class.getName());
+        super.put("Alg.Alias.Mac.1.2.156.10197.1.401.2", "HmacSM3");
     }
 }
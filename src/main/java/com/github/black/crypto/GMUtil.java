@@ -16,10 +16,16 @@
 
 package com.github.black.crypto;
 
+import com.github.black.crypto.digests.FileHashResult;
 import com.github.black.crypto.digests.SM3Digest;
+import com.github.black.crypto.digests.SM3Files;
+import com.github.black.crypto.digests.SM3MultiLane;
 import com.github.black.crypto.util.Hex;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
 
 /**
  * 国密的静态工具类
@@ -58,6 +64,49 @@ public class GMUtil {
         return sm3.digest();
     }
 
+    /**
+     * SM3杂凑算法,计算文件的 32 byte(即 256 bit) 杂凑值,大文件以内存映射的方式读取
+     *
+     * @param path 文件路径
+     * @return 32 byte[] 杂凑值
+     * @throws IOException 读取文件失败
+     */
+    public static byte[] sm3(Path path) throws IOException {
+        return SM3Files.hash(path);
+    }
+
+    /**
+     * SM3杂凑算法,以与处理器数量相同的线程数并行计算多个文件的杂凑值
+     *
+     * @param paths 文件路径
+     * @return 按输入顺序排列的各文件的杂凑值或异常,以及吞吐量
+     */
+    public static FileHashResult sm3All(Collection<Path> paths) {
+        return SM3Files.hashAll(paths);
+    }
+
+    /**
+     * SM3杂凑算法,并行计算多个文件的杂凑值
+     *
+     * @param paths       文件路径
+     * @param parallelism 最大的并行线程数
+     * @return 按输入顺序排列的各文件的杂凑值或异常,以及吞吐量
+     */
+    public static FileHashResult sm3All(Collection<Path> paths, int parallelism) {
+        return SM3Files.hashAll(paths, parallelism);
+    }
+
+    /**
+     * SM3杂凑算法,分别计算每条消息的 32 byte(即 256 bit) 杂凑值.
+     * 多条消息在多个通道中交错计算,适合大量互相独立的短消息
+     *
+     * @param messages 待杂凑的消息
+     * @return 与 messages 一一对应的 32 byte[] 杂凑值
+     */
+    public static byte[][] hashAll(byte[][] messages) {
+        return SM3MultiLane.hashAll(messages);
+    }
+
     /**
      * SM3杂凑算法,使用给定消息生成 32 byte(即 256 bit) 杂凑值并转换为 16 进制的字符串(64 char)
      *
@@ -19,6 +19,7 @@ package com.github.black.crypto.agreement;
 import com.github.black.crypto.GMUtil;
 import com.github.black.crypto.algorithm.ECCKeyPair;
 import com.github.black.crypto.algorithm.ECPoint;
+import com.github.black.crypto.algorithm.MultiplyMode;
 import com.github.black.crypto.algorithm.SM2;
 import com.github.black.crypto.algorithm.SM2KeyPair;
 
@@ -50,10 +51,16 @@ public class SM2Agreement {
         // A6_1,B5_1: 验证 Ro 是否满足椭圆曲线方程
         ECPoint Ro = otherInfo.getR();
         try {
-            this.sm2.checkPoint(Ro);
+            this.sm2.checkPublicKey(Ro);
         } catch (IllegalArgumentException e) {
             throw new KeyAgreementException("other's public key mismatch the curve");
         }
+        // 对方的静态公钥通常反复出现,校验结果可以缓存
+        try {
+            this.sm2.checkStaticPublicKey(otherInfo.getP());
+        } catch (IllegalArgumentException e) {
+            throw new KeyAgreementException("other's static public key is invalid");
+        }
         // A2,B2: R = [r]G = (x2,y2)
         ECPoint R = r.getPublicKey();
         BigInteger n = this.sm2.getN();
@@ -72,8 +79,16 @@ public class SM2Agreement {
         BigInteger t = x_.multiply(r.getPrivateKey()).add(keyPair.getPrivateKey()).mod(n);
         // A6_2,B5_2: xo_
         BigInteger xo_ = Ro.getX().and(BigInteger.ONE.shiftRight(w).subtract(BigInteger.ONE)).setBit(w);
-        // A7,B6: u = [h · t](po + [xo_]Ro) = (xu,yu)
-        ECPoint u = this.sm2.multiply(this.sm2.add(this.sm2.multiply(Ro, xo_), otherInfo.getP()), this.sm2.getH().multiply(t));
+        // A7,B6: u = [h · t](po + [xo_]Ro) = [h · t]po + [h · t · xo_]Ro = (xu,yu)
+        // Ro 已通过校验,其阶为 n,因此 Ro 的系数可以先模 n
+        BigInteger ht = this.sm2.getH().multiply(t);
+        ECPoint u;
+        if (this.sm2.getMultiplyMode() == MultiplyMode.LADDER) {
+            // 私钥参与的 ht 只用于一次阶梯乘法; xo_ 由公开的 Ro 得到,po + [xo_]Ro 使用 wNAF
+            u = this.sm2.multiply(this.sm2.multiplyAdd(xo_, Ro, BigInteger.ONE, otherInfo.getP()), ht);
+        } else {
+            u = this.sm2.multiplyAdd(ht, otherInfo.getP(), ht.multiply(xo_).mod(n), Ro);
+        }
         if (u.isInfinity()) {
             throw new KeyAgreementException("u is infinity");
         }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import java.math.BigInteger;
+
+/**
+ * 通用的素域运算,乘法借助 {@link BigInteger} 完成取模.
+ * 适用于没有专用实现的任意素数 p.
+ */
+final class BigIntegerField extends FPField {
+
+    BigIntegerField(BigInteger p) {
+        super(p);
+    }
+
+    @Override
+    void fromBigInteger(BigInteger x, int[] z) {
+        this.toWords(x.mod(this.p), z);
+    }
+
+    @Override
+    BigInteger toBigInteger(int[] x) {
+        return this.fromWords(x);
+    }
+
+    @Override
+    void multiply(int[] x, int[] y, int[] z) {
+        this.toWords(this.fromWords(x).multiply(this.fromWords(y)).mod(this.p), z);
+    }
+
+    @Override
+    void one(int[] z) {
+        this.zero(z);
+        z[0] = 1;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+/**
+ * 使用 co-Z 加法公式的 Montgomery 阶梯标量乘法.
+ * <p>
+ * 阶梯始终保持 R1 - R0 = P,且 R0, R1 共用同一个 Z,每一位依次执行一次 XYCZ-ADDC 与一次 XYCZ-ADD,
+ * 与该位的值无关; 两个寄存器按位的值以掩码交换,不产生分支,因此域运算的序列与标量无关.
+ * 各域运算本身的耗时取决于 {@link FPField} 的实现,不保证与操作数无关.
+ * 公式见 M. Rivain, Fast and Regular Algorithms for Scalar Multiplication over Elliptic Curves.
+ * <p>
+ * 每次 co-Z 加法都会将公共的 Z 乘以 X1 - X2,此处显式地维护 Z,结果可直接作为雅可比坐标使用.
+ * 非线程安全,每次标量乘各自创建一个实例.
+ */
+final class CoZLadder {
+
+    private final FPField field;
+    private final int[] a;
+
+    /**
+     * 寄存器 U = R_b, V = R_(1-b)
+     */
+    private final int[] xu, yu, xv, yv;
+    /**
+     * 公共的 Z
+     */
+    private final int[] z;
+
+    private final int[] t1, t2, t3, t4, t5;
+
+    CoZLadder(FPField field, int[] a) {
+        this.field = field;
+        this.a = a;
+        this.xu = field.create();
+        this.yu = field.create();
+        this.xv = field.create();
+        this.yv = field.create();
+        this.z = field.create();
+        this.t1 = field.create();
+        this.t2 = field.create();
+        this.t3 = field.create();
+        this.t4 = field.create();
+        this.t5 = field.create();
+    }
+
+    /**
+     * r = [k]P
+     *
+     * @param x     P 的仿射坐标 x
+     * @param y     P 的仿射坐标 y
+     * @param words 标量 k 的小端序字表示
+     * @param bits  k 的比特数,最高位必须为 1
+     * @return 运算过程中是否未出现退化(结果为无穷远点,或某一步两点的横坐标相同),退化时 r 无意义
+     */
+    boolean multiply(int[] x, int[] y, int[] words, int bits, JacobianPoint r) {
+        FPField f = this.field;
+        // (U, V) = (P, 2P)
+        this.initialDouble(x, y);
+        int swapped = 0;
+        for (int i = bits - 2; i >= 0; i--) {
+            int b = (words[i >>> 5] >>> (i & 31)) & 1;
+            // 交换后 U = R_b, V = R_(1-b)
+            this.swap(swapped ^ b);
+            swapped = b;
+            // (V, U) = (U + V, U - V)
+            this.addc();
+            // (U, V) = (V + U, V)
+            this.add();
+        }
+        this.swap(swapped);
+        f.copy(this.xu, r.x);
+        f.copy(this.yu, r.y);
+        f.copy(this.z, r.z);
+        return !f.isZero(this.z);
+    }
+
+    /**
+     * 将标量 k (0 <= k < n) 补齐为 k + n 与 k + 2n 中第 bits - 1 位为 1 的一个.
+     * 两个候选值都以定长的字运算求出,再按 k + n 的最高位以掩码选择,不产生分支.
+     *
+     * @param k    标量的小端序字表示
+     * @param n    阶 n 的小端序字表示,与 k 等长且足以容纳 3n
+     * @param bits n 的比特数加 1
+     * @return 补齐后的标量
+     */
+    static int[] pad(int[] k, int[] n, int bits) {
+        int len = k.length;
+        int[] k1 = new int[len];
+        int[] k2 = new int[len];
+        long c1 = 0;
+        long c2 = 0;
+        for (int i = 0; i < len; i++) {
+            c1 += (k[i] & FPField.M) + (n[i] & FPField.M);
+            k1[i] = (int) c1;
+            c1 >>>= 32;
+            c2 += (k1[i] & FPField.M) + (n[i] & FPField.M);
+            k2[i] = (int) c2;
+            c2 >>>= 32;
+        }
+        int top = bits - 1;
+        int mask = -((k1[top >>> 5] >>> (top & 31)) & 1);
+        for (int i = 0; i < len; i++) {
+            k2[i] ^= (k1[i] ^ k2[i]) & mask;
+        }
+        return k2;
+    }
+
+    /**
+     * XYCZ-IDBL: 由仿射坐标的 P 得到共用 Z 的 U = P, V = 2P.
+     * <pre>{@code
+     * M = 3 * x ^ 2 + a,  S = 4 * x * y ^ 2,  L = y ^ 4
+     * 2P = (M ^ 2 - 2 * S, M * (S - X) - 8 * L),  P = (S, 8 * L),  Z = 2 * y
+     * }</pre>
+     */
+    private void initialDouble(int[] x, int[] y) {
+        FPField f = this.field;
+        // t1 = y ^ 2, t2 = S, t3 = 8 * L
+        f.square(y, t1);
+        f.multiply(x, t1, t2);
+        f.twice(t2, t2);
+        f.twice(t2, t2);
+        f.square(t1, t3);
+        f.twice(t3, t3);
+        f.twice(t3, t3);
+        f.twice(t3, t3);
+        // t4 = M
+        f.square(x, t4);
+        f.twice(t4, t5);
+        f.add(t4, t5, t4);
+        f.add(t4, this.a, t4);
+        // V = 2P
+        f.square(t4, t5);
+        f.subtract(t5, t2, t5);
+        f.subtract(t5, t2, this.xv);
+        f.subtract(t2, this.xv, t5);
+        f.multiply(t4, t5, t5);
+        f.subtract(t5, t3, this.yv);
+        // U = P
+        f.copy(t2, this.xu);
+        f.copy(t3, this.yu);
+        f.twice(y, this.z);
+    }
+
+    /**
+     * XYCZ-ADDC: (V, U) = (U + V, U - V),其中 (X1, Y1) = U, (X2, Y2) = V.
+     * <pre>{@code
+     * C = (X1 - X2) ^ 2,  W1 = X1 * C,  W2 = X2 * C,  A1 = Y1 * (W1 - W2)
+     * X3 = (Y1 - Y2) ^ 2 - W1 - W2,  Y3 = (Y1 - Y2) * (W1 - X3) - A1
+     * X3' = (Y1 + Y2) ^ 2 - W1 - W2,  Y3' = (Y1 + Y2) * (W1 - X3') - A1
+     * Z' = Z * (X1 - X2)
+     * }</pre>
+     */
+    private void addc() {
+        FPField f = this.field;
+        this.prepare(xu, yu, xv);
+        // t3 = Y1 - Y2, t4 = Y1 + Y2
+        f.subtract(yu, yv, t3);
+        f.add(yu, yv, t4);
+        // V = (X3, Y3)
+        f.square(t3, xv);
+        f.subtract(xv, t1, xv);
+        f.subtract(xv, t2, xv);
+        f.subtract(t1, xv, yv);
+        f.multiply(t3, yv, yv);
+        f.subtract(yv, t5, yv);
+        // U = (X3', Y3')
+        f.square(t4, t3);
+        f.subtract(t3, t1, t3);
+        f.subtract(t3, t2, xu);
+        f.subtract(t1, xu, yu);
+        f.multiply(t4, yu, yu);
+        f.subtract(yu, t5, yu);
+    }
+
+    /**
+     * XYCZ-ADD: (U, V) = (V + U, V),公式与 XYCZ-ADDC 的前半部分相同,其中 (X1, Y1) = V, (X2, Y2) = U
+     */
+    private void add() {
+        FPField f = this.field;
+        this.prepare(xv, yv, xu);
+        // t3 = Y1 - Y2
+        f.subtract(yv, yu, t3);
+        // U = (X3, Y3)
+        f.square(t3, xu);
+        f.subtract(xu, t1, xu);
+        f.subtract(xu, t2, xu);
+        f.subtract(t1, xu, yu);
+        f.multiply(t3, yu, yu);
+        f.subtract(yu, t5, yu);
+        // V = (W1, A1)
+        f.copy(t1, xv);
+        f.copy(t5, yv);
+    }
+
+    /**
+     * 计算 t1 = W1, t2 = W2, t5 = A1,并更新 Z
+     */
+    private void prepare(int[] x1, int[] y1, int[] x2) {
+        FPField f = this.field;
+        f.subtract(x1, x2, t3);
+        f.multiply(this.z, t3, this.z);
+        f.square(t3, t4);
+        f.multiply(x1, t4, t1);
+        f.multiply(x2, t4, t2);
+        f.subtract(t1, t2, t5);
+        f.multiply(y1, t5, t5);
+    }
+
+    /**
+     * 当 swap = 1 时交换 U 与 V,swap = 0 时不变,不产生分支
+     */
+    private void swap(int swap) {
+        int mask = -swap;
+        int size = this.field.getSize();
+        for (int i = 0; i < size; i++) {
+            int d = (xu[i] ^ xv[i]) & mask;
+            xu[i] ^= d;
+            xv[i] ^= d;
+            d = (yu[i] ^ yv[i]) & mask;
+            yu[i] ^= d;
+            yv[i] ^= d;
+        }
+    }
+}
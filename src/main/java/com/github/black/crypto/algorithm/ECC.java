@@ -16,16 +16,28 @@
 
 package com.github.black.crypto.algorithm;
 
+import com.github.black.crypto.util.LruCache;
 import com.github.black.crypto.util.PackUtil;
 import com.github.black.crypto.util.RandomUtil;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 /**
  * 基于有限域上的椭圆曲线的加密算法
  */
 public class ECC extends ECOverFP {
 
+    /**
+     * 基点 g 的 wNAF 窗口宽度,预计算 32 个点
+     */
+    private static final int G_WNAF_WIDTH = 7;
+
+    /**
+     * 已校验的静态公钥缓存的最大条目数
+     */
+    private static final int VALIDATED_KEY_CACHE_SIZE = 1024;
+
     /**
      * 基点(生成元) g: 循环子群的生成元/基点.
      * 定义: g 的加法是个闭环,即使将 2n 个 g 相加,得到的结果仍然与 n 个 g 相加的结果相同
@@ -41,6 +53,26 @@ public class ECC extends ECOverFP {
      * 即曲线点数可以是 h 倍的 n.但一般为 1.
      */
     private final BigInteger h;
+    /**
+     * 基点 g 的定窗预计算表,首次使用时构建,多线程共享
+     */
+    private volatile FixedBaseTable gTable;
+    /**
+     * 基点 g 的宽窗口 wNAF 奇数倍点表,用于双标量乘法,首次使用时构建,多线程共享
+     */
+    private volatile WNaf.Table gWNafTable;
+    /**
+     * 基点 g 的阶过小,无法构建预计算表
+     */
+    private volatile boolean gTableUnavailable;
+    /**
+     * 标量乘法的实现方式
+     */
+    private volatile MultiplyMode multiplyMode = MultiplyMode.WNAF;
+    /**
+     * 最近通过校验的静态公钥
+     */
+    private final LruCache<ECPoint, Boolean> validatedKeys = new LruCache<>(VALIDATED_KEY_CACHE_SIZE);
 
     /**
      * 构造一个基于有限域上的椭圆曲线的加密算法
@@ -61,21 +93,212 @@ public class ECC extends ECOverFP {
     }
 
     /**
-     * 将给定的值与基点 g 相乘
+     * 将给定的值与基点 g 相乘.
+     * <p>
+     * 使用基点的定窗预计算表,无需倍点.
      */
     public ECPoint multiplyG(BigInteger n) {
-        return this.multiply(this.getG(), n);
+        JacobianArithmetic arithmetic = this.newArithmetic();
+        JacobianPoint r = arithmetic.create();
+        this.multiplyG(arithmetic, n, r);
+        return arithmetic.toAffine(r);
+    }
+
+    /**
+     * r = [n]G,结果保持雅可比坐标
+     */
+    void multiplyG(JacobianArithmetic arithmetic, BigInteger n, JacobianPoint r) {
+        if (this.multiplyMode == MultiplyMode.LADDER) {
+            this.multiplyLadder(arithmetic, this.getG(), n, r);
+            return;
+        }
+        FixedBaseTable table = this.getGTable();
+        if (table != null && table.covers(n)) {
+            table.multiply(arithmetic, n, r);
+        } else {
+            this.multiply(arithmetic, this.getG(), n, r);
+        }
     }
 
+    /**
+     * LADDER 模式下,只有确定属于阶为 n 的子群的点才使用阶梯,其余的点使用 wNAF,
+     * 以免阶梯中的 k mod n 对子群外的点得到错误的结果.
+     */
+    @Override
+    void multiply(JacobianArithmetic arithmetic, ECPoint p, BigInteger n, JacobianPoint r) {
+        if (this.multiplyMode == MultiplyMode.LADDER && this.inSubgroup(p)) {
+            this.multiplyLadder(arithmetic, p, n, r);
+        } else {
+            super.multiply(arithmetic, p, n, r);
+        }
+    }
+
+    /**
+     * 使用 co-Z Montgomery 阶梯计算 r = [k]p,p 需属于阶为 n 的子群.
+     * <p>
+     * 将标量替换为 k' = k mod n + n 或 k mod n + 2n 中最高位为 1 的一个,使其比特数固定为 n 的比特数加 1,
+     * 两个候选值均以定长的字运算得到,并以掩码选择,因此阶梯的步数与域运算序列与 k 无关.
+     * 预处理中的 k mod n 与大数到字的转换仍由 BigInteger 完成,其耗时可能与 k 的大小相关.
+     * 仅在结果为无穷远点等极少数退化情况下回退到 wNAF.
+     */
+    private void multiplyLadder(JacobianArithmetic arithmetic, ECPoint p, BigInteger k, JacobianPoint r) {
+        if (p.isInfinity()) {
+            arithmetic.setInfinity(r);
+            return;
+        }
+        BigInteger n = this.getN();
+        int bits = n.bitLength() + 1;
+        int[] words = CoZLadder.pad(FixedBaseTable.toWords(k.mod(n), bits), FixedBaseTable.toWords(n, bits), bits);
+        FPField f = this.getField();
+        CoZLadder ladder = this.newLadder();
+        if (!ladder.multiply(f.fromBigInteger(p.getX()), f.fromBigInteger(p.getY()), words, bits, r)) {
+            super.multiply(arithmetic, p, k.mod(n), r);
+        }
+    }
+
+    /**
+     * @return 点 P 是否确定属于阶为 n 的子群: 基点、已缓存的静态公钥,或在曲线上且满足 [n]P = O
+     */
+    private boolean inSubgroup(ECPoint p) {
+        if (p.isInfinity() || p.equals(this.getG()) || this.validatedKeys.get(p) != null) {
+            return true;
+        }
+        return this.isOnCurve(p) && this.hasOrderN(p);
+    }
+
+    /**
+     * 曲线上的点 P 是否满足 [n]P = O. 辅因子 h = 1 时曲线上的点恰好构成阶为 n 的群,无需计算
+     */
+    private boolean hasOrderN(ECPoint p) {
+        if (BigInteger.ONE.equals(this.getH())) {
+            return true;
+        }
+        // 点是公开的,总是使用 wNAF; 阶梯要求点的阶为 n,不能用于校验
+        JacobianArithmetic arithmetic = this.newArithmetic();
+        JacobianPoint r = arithmetic.create();
+        super.multiply(arithmetic, p, this.getN(), r);
+        return arithmetic.isInfinity(r);
+    }
+
+    /**
+     * 设置标量乘法的实现方式,影响 {@link #multiply} 与 {@link #multiplyG}.
+     * {@link #multiplyAdd} 只用于验签等标量公开的运算,任何模式下都使用共用倍点链的交错 wNAF
+     *
+     * @param multiplyMode 实现方式
+     */
+    public void setMultiplyMode(MultiplyMode multiplyMode) {
+        if (multiplyMode == null) {
+            throw new IllegalArgumentException("multiply mode should not be null");
+        }
+        this.multiplyMode = multiplyMode;
+    }
+
+    public MultiplyMode getMultiplyMode() {
+        return multiplyMode;
+    }
+
+    /**
+     * 获取基点的预计算表,首次调用时构建
+     *
+     * @return 预计算表,无法构建时返回 null
+     */
+    FixedBaseTable getGTable() {
+        FixedBaseTable table = this.gTable;
+        if (table == null && !this.gTableUnavailable) {
+            synchronized (this) {
+                table = this.gTable;
+                if (table == null && !this.gTableUnavailable) {
+                    table = FixedBaseTable.build(this, this.getG(), this.getN().bitLength(), FixedBaseTable.WIDTH);
+                    if (table == null) {
+                        this.gTableUnavailable = true;
+                    } else {
+                        this.gTable = table;
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 基点 g 的奇数倍点表只需构建一次,因此可以使用比一般点更宽的窗口
+     */
+    @Override
+    WNaf.Table precompute(JacobianArithmetic arithmetic, ECPoint p) {
+        if (p.equals(this.getG())) {
+            WNaf.Table table = this.getGWNafTable();
+            if (table != null) {
+                return table;
+            }
+        }
+        return super.precompute(arithmetic, p);
+    }
+
+    private WNaf.Table getGWNafTable() {
+        WNaf.Table table = this.gWNafTable;
+        if (table == null && !this.gTableUnavailable) {
+            synchronized (this) {
+                table = this.gWNafTable;
+                if (table == null && !this.gTableUnavailable) {
+                    table = WNaf.Table.build(this.newArithmetic(), this.getG(), G_WNAF_WIDTH);
+                    if (table == null) {
+                        this.gTableUnavailable = true;
+                    } else {
+                        this.gWNafTable = table;
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 验证点 P 是否属于椭圆曲线,且属于阶为 n 的子群.
+     * <p>
+     * 辅因子 h = 1 时曲线上的点恰好构成阶为 n 的群,曲线上的点必然满足 [n]P = O,省去一次标量乘法;
+     * 否则计算 [n]P 并验证其为无穷远点.
+     */
     @Override
     public void checkPoint(ECPoint p) {
         super.checkPoint(p);
-        if (this.multiply(p, this.getN()).isInfinity()) {
+        if (this.hasOrderN(p)) {
             return;
         }
         throw new IllegalArgumentException("illegal public key: " + p);
     }
 
+    /**
+     * PDF1 6.2.1 公钥的验证: P 不是无穷远点,坐标属于 [0, p - 1],P 在曲线上且 [n]P = O
+     *
+     * @param p 公钥
+     */
+    public void checkPublicKey(ECPoint p) {
+        if (p.isInfinity()) {
+            throw new IllegalArgumentException("public key should not be infinity");
+        }
+        if (!this.inField(p.getX()) || !this.inField(p.getY())) {
+            throw new IllegalArgumentException("public key coordinates out of range: " + p);
+        }
+        this.checkPoint(p);
+    }
+
+    /**
+     * 校验反复出现的静态公钥,与 {@link #checkPublicKey} 相同,但通过校验的公钥会被缓存,再次校验时直接返回.
+     * 临时公钥只会出现一次,应使用 {@link #checkPublicKey},以免挤占缓存.
+     *
+     * @param p 公钥
+     */
+    public void checkStaticPublicKey(ECPoint p) {
+        if (this.validatedKeys.get(p) != null) {
+            return;
+        }
+        this.checkPublicKey(p);
+        this.validatedKeys.put(p, Boolean.TRUE);
+    }
+
+    private boolean inField(BigInteger v) {
+        return v.signum() >= 0 && v.compareTo(this.getP()) < 0;
+    }
 
     public ECPoint getG() {
         return g;
@@ -132,12 +355,62 @@ public class ECC extends ECOverFP {
     }
 
     /**
-     * 字节串到点的转换
+     * 字节串到点的转换,支持未压缩形式 (04 ∥ X1 ∥ Y1) 与压缩形式 (02/03 ∥ X1),
+     * 单个字节 00 表示无穷远点. 转换得到的点按 {@link #checkPublicKey} 校验.
      *
      * @param bytes 待转换的字节串
      * @return 点
+     * @throws IllegalArgumentException 字节串格式错误或点不合法
      */
     public ECPoint deserializePoint(byte[] bytes) {
-        return null;
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("empty point encoding");
+        }
+        int len = (this.getP().bitLength() + 7) / 8;
+        byte pc = bytes[0];
+        if (pc == 0x00 && bytes.length == 1) {
+            return ECPoint.INFINITY;
+        }
+        ECPoint point;
+        if (pc == 0x04 && bytes.length == 2 * len + 1) {
+            point = new ECPoint(
+                    new BigInteger(1, Arrays.copyOfRange(bytes, 1, len + 1)),
+                    new BigInteger(1, Arrays.copyOfRange(bytes, len + 1, 2 * len + 1))
+            );
+        } else if ((pc == 0x02 || pc == 0x03) && bytes.length == len + 1) {
+            point = this.decompress(new BigInteger(1, Arrays.copyOfRange(bytes, 1, len + 1)), pc == 0x03);
+        } else {
+            throw new IllegalArgumentException("illegal point encoding");
+        }
+        this.checkPublicKey(point);
+        return point;
+    }
+
+    /**
+     * PDF1 A.5.2 由 x 与 y 的最低位恢复 y: y = √(x ^ 3 + a * x + b)
+     */
+    private ECPoint decompress(BigInteger x, boolean odd) {
+        if (!this.inField(x)) {
+            throw new IllegalArgumentException("x out of range: " + x);
+        }
+        FPField f = this.getField();
+        int[] fx = f.fromBigInteger(x);
+        int[] t = f.create();
+        // t = (x ^ 2 + a) * x + b
+        f.square(fx, t);
+        f.add(t, f.fromBigInteger(this.getA()), t);
+        f.multiply(t, fx, t);
+        f.add(t, f.fromBigInteger(this.getB()), t);
+        if (!f.sqrt(t, t)) {
+            throw new IllegalArgumentException("no point on the curve with x: " + x);
+        }
+        BigInteger y = f.toBigInteger(t);
+        if (y.testBit(0) != odd) {
+            if (y.signum() == 0) {
+                throw new IllegalArgumentException("no odd y on the curve with x: " + x);
+            }
+            y = this.getP().subtract(y);
+        }
+        return new ECPoint(x, y);
     }
 }
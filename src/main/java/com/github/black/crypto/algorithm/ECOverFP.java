@@ -23,7 +23,6 @@ import java.math.BigInteger;
  */
 public class ECOverFP {
 
-    private static final BigInteger B2 = BigInteger.valueOf(2);
     private static final BigInteger B3 = BigInteger.valueOf(3);
     private static final BigInteger B4 = BigInteger.valueOf(4);
     private static final BigInteger B27 = BigInteger.valueOf(27);
@@ -41,6 +40,22 @@ public class ECOverFP {
      * 素域范围 p
      */
     private final BigInteger p;
+    /**
+     * 素域上的运算,根据 p 选择专用或通用的实现
+     */
+    private final FPField field;
+    /**
+     * 素域元素形式的参数 a
+     */
+    private final int[] fieldA;
+    /**
+     * a = -3 mod p 时,倍点可使用更少乘法的公式 (SM2 曲线即满足该条件)
+     */
+    private final boolean aIsMinus3;
+    /**
+     * wNAF 标量乘法的窗口宽度
+     */
+    private volatile int wNafWidth = WNaf.DEFAULT_WIDTH;
 
     /**
      * 构造一个椭圆曲线方程
@@ -53,6 +68,9 @@ public class ECOverFP {
         this.a = a;
         this.b = b;
         this.p = p;
+        this.field = FPField.of(p);
+        this.fieldA = this.field.fromBigInteger(a);
+        this.aIsMinus3 = a.add(B3).mod(p).signum() == 0;
     }
 
     /**
@@ -77,42 +95,161 @@ public class ECOverFP {
         if (q.isInfinity()) {
             return p;
         }
-        // 斜率
-        BigInteger m;
-        // xp == xq
-        if (p.getX().equals(q.getX())) {
-            // yp == -yq 则 q 其实为 -p ,和为 p + -p =  0
-            if (p.getY().negate().mod(this.getP()).equals(q.getY())) {
-                return ECPoint.INFINITY;
-            }
-            // yp == yq 则 p q 为同一点,计算斜率 m = ((3 * px ^ 2  + a) * (2 * py) ^ -1) mod p
-            m = p.getX().pow(2).multiply(B3).add(this.getA()).multiply(p.getY().multiply(B2).modInverse(this.getP())).mod(this.getP());
-        } else {
-            // p q 不在同一点,则计算斜率 m = ((py - qy) * (px - qx) ^ -1) mod p
-            m = p.getY().subtract(q.getY()).multiply(p.getX().subtract(q.getX()).modInverse(this.getP())).mod(this.getP());
-        }
-        // xr = (m ^ 2 - px - qx) mod p
-        BigInteger rx = m.pow(2).subtract(p.getX()).subtract(q.getX()).mod(this.getP());
-        // yr = (py + m * (rx - px)) mod p
-        BigInteger ry = p.getY().add(rx.subtract(p.getX()).multiply(m)).mod(this.getP());
-        return new ECPoint(rx, ry.negate().mod(this.getP()));
+        JacobianArithmetic arithmetic = this.newArithmetic();
+        FPField f = this.field;
+        JacobianPoint r = arithmetic.create();
+        arithmetic.setAffine(p, r);
+        arithmetic.addAffine(r, f.fromBigInteger(q.getX()), f.fromBigInteger(q.getY()), r);
+        return arithmetic.toAffine(r);
     }
 
     /**
      * 乘法: p * n.
      * <p>
-     * 倍加法计算.
+     * 在雅可比坐标下使用 wNAF 自高位向低位倍加,仅在返回结果时做一次模逆转换为仿射坐标.
      */
     public ECPoint multiply(ECPoint p, BigInteger n) {
-        ECPoint rst = ECPoint.INFINITY;
-        ECPoint added = p;
-        for (int i = 0, len = n.bitLength(); i < len; i++) {
+        JacobianArithmetic arithmetic = this.newArithmetic();
+        JacobianPoint r = arithmetic.create();
+        this.multiply(arithmetic, p, n, r);
+        return arithmetic.toAffine(r);
+    }
+
+    /**
+     * 乘法: p * n,结果保持雅可比坐标并写入 r
+     */
+    void multiply(JacobianArithmetic arithmetic, ECPoint p, BigInteger n, JacobianPoint r) {
+        arithmetic.setInfinity(r);
+        if (p.isInfinity() || n.signum() == 0) {
+            return;
+        }
+        if (n.signum() < 0) {
+            this.multiply(arithmetic, this.negate(p), n.negate(), r);
+            return;
+        }
+        WNaf.Table table = this.precompute(arithmetic, p);
+        if (table == null) {
+            this.multiplyBinary(arithmetic, p, n, r);
+            return;
+        }
+        WNaf.interleave(arithmetic, new int[][]{WNaf.generate(n, table.width)}, new WNaf.Table[]{table}, r);
+    }
+
+    /**
+     * 双标量乘法: k1 * p1 + k2 * p2.
+     * <p>
+     * 两个标量的 wNAF 交错进行,共用同一条倍点链,比分别计算两次乘法再相加约少一半的倍点,
+     * 且只在返回结果时做一次模逆.
+     */
+    public ECPoint multiplyAdd(BigInteger k1, ECPoint p1, BigInteger k2, ECPoint p2) {
+        JacobianArithmetic arithmetic = this.newArithmetic();
+        JacobianPoint r = arithmetic.create();
+        this.multiplyAdd(arithmetic, k1, p1, k2, p2, r);
+        return arithmetic.toAffine(r);
+    }
+
+    /**
+     * 双标量乘法: k1 * p1 + k2 * p2,结果保持雅可比坐标并写入 r
+     */
+    void multiplyAdd(JacobianArithmetic arithmetic, BigInteger k1, ECPoint p1, BigInteger k2, ECPoint p2, JacobianPoint r) {
+        if (k1.signum() < 0) {
+            this.multiplyAdd(arithmetic, k1.negate(), this.negate(p1), k2, p2, r);
+            return;
+        }
+        if (k2.signum() < 0) {
+            this.multiplyAdd(arithmetic, k1, p1, k2.negate(), this.negate(p2), r);
+            return;
+        }
+        if (p1.isInfinity() || k1.signum() == 0) {
+            this.multiply(arithmetic, p2, k2, r);
+            return;
+        }
+        if (p2.isInfinity() || k2.signum() == 0) {
+            this.multiply(arithmetic, p1, k1, r);
+            return;
+        }
+        WNaf.Table t1 = this.precompute(arithmetic, p1);
+        WNaf.Table t2 = this.precompute(arithmetic, p2);
+        if (t1 == null || t2 == null) {
+            JacobianPoint q = arithmetic.create();
+            this.multiply(arithmetic, p1, k1, r);
+            this.multiply(arithmetic, p2, k2, q);
+            arithmetic.add(r, q, r);
+            return;
+        }
+        WNaf.interleave(arithmetic,
+                new int[][]{WNaf.generate(k1, t1.width), WNaf.generate(k2, t2.width)},
+                new WNaf.Table[]{t1, t2}, r);
+    }
+
+    /**
+     * 构建点 p 的 wNAF 奇数倍点表,子类可以为固定的点返回缓存的表
+     *
+     * @return 奇数倍点表,p 的阶过小时返回 null
+     */
+    WNaf.Table precompute(JacobianArithmetic arithmetic, ECPoint p) {
+        return WNaf.Table.build(arithmetic, p, this.wNafWidth);
+    }
+
+    /**
+     * 倍加法计算 p * n,用于阶过小以致无法构建 wNAF 预计算表的点
+     */
+    private void multiplyBinary(JacobianArithmetic arithmetic, ECPoint p, BigInteger n, JacobianPoint r) {
+        FPField f = this.field;
+        int[] x = f.fromBigInteger(p.getX());
+        int[] y = f.fromBigInteger(p.getY());
+        arithmetic.setInfinity(r);
+        for (int i = n.bitLength() - 1; i >= 0; i--) {
+            arithmetic.twice(r, r);
             if (n.testBit(i)) {
-                rst = add(rst, added);
+                arithmetic.addAffine(r, x, y, r);
             }
-            added = add(added, added);
         }
-        return rst;
+    }
+
+    /**
+     * 相反点: -p = (x, -y)
+     */
+    public ECPoint negate(ECPoint p) {
+        if (p.isInfinity()) {
+            return p;
+        }
+        return new ECPoint(p.getX(), p.getY().negate().mod(this.getP()));
+    }
+
+    /**
+     * 设置 wNAF 标量乘法的窗口宽度.
+     * 宽度越大加法越少,但每次乘法需要预计算 2 ^ (w - 2) 个点.
+     *
+     * @param width 窗口宽度,4 到 6 之间
+     */
+    public void setWNafWidth(int width) {
+        if (width < WNaf.MIN_WIDTH || width > WNaf.MAX_WIDTH) {
+            throw new IllegalArgumentException("wNAF width should be between " + WNaf.MIN_WIDTH + " and " + WNaf.MAX_WIDTH);
+        }
+        this.wNafWidth = width;
+    }
+
+    public int getWNafWidth() {
+        return wNafWidth;
+    }
+
+    /**
+     * 创建一个雅可比坐标运算器,非线程安全
+     */
+    JacobianArithmetic newArithmetic() {
+        return new JacobianArithmetic(this.field, this.fieldA, this.aIsMinus3);
+    }
+
+    /**
+     * 创建一个 co-Z Montgomery 阶梯运算器,非线程安全
+     */
+    CoZLadder newLadder() {
+        return new CoZLadder(this.field, this.fieldA);
+    }
+
+    FPField getField() {
+        return field;
     }
 
     public void checkCurve() {
@@ -130,16 +267,23 @@ public class ECOverFP {
      * 验证点 P 是否属于椭圆曲线
      */
     public void checkPoint(ECPoint p) {
-        if (p.isInfinity()) {
+        if (this.isOnCurve(p)) {
             return;
         }
+        throw new IllegalArgumentException("P Not on the curve: " + p);
+    }
+
+    /**
+     * @return 点 P 是否属于椭圆曲线,无穷远点视为属于
+     */
+    boolean isOnCurve(ECPoint p) {
+        if (p.isInfinity()) {
+            return true;
+        }
         // y ^ 2 = x ^ 3 + a * x + b mod p
         BigInteger l = p.getY().pow(2).mod(this.getP());
         BigInteger r = p.getX().pow(3).add(this.getA().multiply(p.getX())).add(this.getB()).mod(this.getP());
-        if (l.equals(r)) {
-            return;
-        }
-        throw new IllegalArgumentException("P Not on the curve: " + p);
+        return l.equals(r);
     }
 
     public BigInteger getA() {
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import java.math.BigInteger;
+
+/**
+ * 素域 <code>F<sub>p</sub></code> 上的运算.
+ * <p>
+ * 元素以定长的 int[] 表示,小端序,每个 int 存储 32 bit 的无符号字,取值位于 [0, p),
+ * 只有前 {@link #size} 个字是元素的值,实现可以将数组其余部分用作运算的暂存区.
+ * 不同的实现可以使用不同的内部表示(如 Montgomery 形式),
+ * 因此元素只能通过 {@link #create()} 创建,并通过 {@link #fromBigInteger} / {@link #toBigInteger} 与大数互相转换.
+ * <p>
+ * 所有运算的结果写入最后一个参数,允许与输入参数为同一数组.
+ */
+abstract class FPField {
+
+    static final long M = 0xFFFFFFFFL;
+
+    /**
+     * 素域范围 p
+     */
+    final BigInteger p;
+    /**
+     * 元素占用的字数
+     */
+    final int size;
+    /**
+     * p 的字表示
+     */
+    final int[] pWords;
+
+    FPField(BigInteger p) {
+        this.p = p;
+        this.size = (p.bitLength() + 31) >>> 5;
+        this.pWords = new int[this.size];
+        toWords(p, this.pWords);
+    }
+
+    /**
+     * 根据素数 p 选择最合适的实现
+     *
+     * @param p 素域范围 p
+     * @return 素域运算
+     */
+    static FPField of(BigInteger p) {
+        if (SM2Field.P.equals(p)) {
+            return new SM2Field();
+        }
+        if (p.testBit(0) && p.bitLength() <= MontgomeryField.MAX_BITS) {
+            return new MontgomeryField(p);
+        }
+        return new BigIntegerField(p);
+    }
+
+    /**
+     * 创建一个值为 0 的元素
+     */
+    int[] create() {
+        return new int[this.size];
+    }
+
+    /**
+     * 将大数 (mod p) 转换为元素
+     */
+    abstract void fromBigInteger(BigInteger x, int[] z);
+
+    /**
+     * 将元素转换为位于 [0, p) 的大数
+     */
+    abstract BigInteger toBigInteger(int[] x);
+
+    /**
+     * z = x * y mod p
+     */
+    abstract void multiply(int[] x, int[] y, int[] z);
+
+    /**
+     * z = x ^ 2 mod p
+     */
+    void square(int[] x, int[] z) {
+        this.multiply(x, x, z);
+    }
+
+    /**
+     * 将元素设置为 1
+     */
+    abstract void one(int[] z);
+
+    /**
+     * z = x ^ -1 mod p, x 不能为 0
+     */
+    void invert(int[] x, int[] z) {
+        this.fromBigInteger(this.toBigInteger(x).modInverse(this.p), z);
+    }
+
+    /**
+     * z = √x mod p
+     * <p>
+     * p ≡ 3 (mod 4) 时 √x = x ^ ((p + 1) / 4),否则使用 Tonelli-Shanks 算法.
+     *
+     * @return x 是否为二次剩余,不是时 z 不变
+     */
+    boolean sqrt(int[] x, int[] z) {
+        int[] r = this.create();
+        if (this.p.testBit(1)) {
+            this.pow(x, this.p.shiftRight(2).add(BigInteger.ONE), r);
+        } else {
+            BigInteger root = tonelliShanks(this.toBigInteger(x), this.p);
+            if (root == null) {
+                return false;
+            }
+            this.fromBigInteger(root, r);
+        }
+        return this.checkSqrt(x, r, z);
+    }
+
+    /**
+     * 验证 r ^ 2 = x,成立时将 r 写入 z
+     */
+    final boolean checkSqrt(int[] x, int[] r, int[] z) {
+        int[] t = this.create();
+        this.square(r, t);
+        if (!this.equals(t, x)) {
+            return false;
+        }
+        this.copy(r, z);
+        return true;
+    }
+
+    /**
+     * z = x ^ e mod p,自高位向低位平方-乘
+     */
+    void pow(int[] x, BigInteger e, int[] z) {
+        int[] r = this.create();
+        this.one(r);
+        for (int i = e.bitLength() - 1; i >= 0; i--) {
+            this.square(r, r);
+            if (e.testBit(i)) {
+                this.multiply(r, x, r);
+            }
+        }
+        this.copy(r, z);
+    }
+
+    /**
+     * Tonelli-Shanks 算法求 a 模奇素数 p 的平方根
+     *
+     * @return 平方根,a 不是二次剩余时返回 null
+     */
+    private static BigInteger tonelliShanks(BigInteger a, BigInteger p) {
+        if (a.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        BigInteger pm1 = p.subtract(BigInteger.ONE);
+        BigInteger half = pm1.shiftRight(1);
+        // 欧拉判别法
+        if (!a.modPow(half, p).equals(BigInteger.ONE)) {
+            return null;
+        }
+        // p - 1 = q * 2 ^ s, q 为奇数
+        int s = pm1.getLowestSetBit();
+        BigInteger q = pm1.shiftRight(s);
+        // 任取一个二次非剩余
+        BigInteger n = BigInteger.valueOf(2);
+        while (!n.modPow(half, p).equals(pm1)) {
+            n = n.add(BigInteger.ONE);
+        }
+        BigInteger c = n.modPow(q, p);
+        BigInteger r = a.modPow(q.add(BigInteger.ONE).shiftRight(1), p);
+        BigInteger t = a.modPow(q, p);
+        int m = s;
+        while (!t.equals(BigInteger.ONE)) {
+            // 找到最小的 i 使 t ^ (2 ^ i) = 1
+            int i = 0;
+            BigInteger t2 = t;
+            while (!t2.equals(BigInteger.ONE)) {
+                t2 = t2.multiply(t2).mod(p);
+                i++;
+            }
+            BigInteger b = c.modPow(BigInteger.ONE.shiftLeft(m - i - 1), p);
+            r = r.multiply(b).mod(p);
+            c = b.multiply(b).mod(p);
+            t = t.multiply(c).mod(p);
+            m = i;
+        }
+        return r;
+    }
+
+    int[] fromBigInteger(BigInteger x) {
+        int[] z = this.create();
+        this.fromBigInteger(x, z);
+        return z;
+    }
+
+    /**
+     * z = x + y mod p
+     */
+    void add(int[] x, int[] y, int[] z) {
+        long c = 0;
+        for (int i = 0; i < this.size; i++) {
+            c += (x[i] & M) + (y[i] & M);
+            z[i] = (int) c;
+            c >>>= 32;
+        }
+        if (c != 0 || this.compareToP(z) >= 0) {
+            this.subtractP(z);
+        }
+    }
+
+    /**
+     * z = 2 * x mod p
+     */
+    void twice(int[] x, int[] z) {
+        this.add(x, x, z);
+    }
+
+    /**
+     * z = x - y mod p
+     */
+    void subtract(int[] x, int[] y, int[] z) {
+        long c = 0;
+        for (int i = 0; i < this.size; i++) {
+            c += (x[i] & M) - (y[i] & M);
+            z[i] = (int) c;
+            c >>= 32;
+        }
+        if (c != 0) {
+            this.addP(z);
+        }
+    }
+
+    /**
+     * z = -x mod p
+     */
+    void negate(int[] x, int[] z) {
+        if (this.isZero(x)) {
+            this.copy(x, z);
+            return;
+        }
+        long c = 0;
+        for (int i = 0; i < this.size; i++) {
+            c += (this.pWords[i] & M) - (x[i] & M);
+            z[i] = (int) c;
+            c >>= 32;
+        }
+    }
+
+    void copy(int[] x, int[] z) {
+        System.arraycopy(x, 0, z, 0, this.size);
+    }
+
+    void zero(int[] z) {
+        for (int i = 0; i < this.size; i++) {
+            z[i] = 0;
+        }
+    }
+
+    boolean isZero(int[] x) {
+        int d = 0;
+        for (int i = 0; i < this.size; i++) {
+            d |= x[i];
+        }
+        return d == 0;
+    }
+
+    boolean equals(int[] x, int[] y) {
+        int d = 0;
+        for (int i = 0; i < this.size; i++) {
+            d |= x[i] ^ y[i];
+        }
+        return d == 0;
+    }
+
+    /**
+     * 比较 x 与 p 的大小
+     */
+    int compareToP(int[] x) {
+        for (int i = this.size - 1; i >= 0; i--) {
+            int c = Integer.compareUnsigned(x[i], this.pWords[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * z = z - p,忽略借位
+     */
+    void subtractP(int[] z) {
+        long c = 0;
+        for (int i = 0; i < this.size; i++) {
+            c += (z[i] & M) - (this.pWords[i] & M);
+            z[i] = (int) c;
+            c >>= 32;
+        }
+    }
+
+    /**
+     * z = z + p,忽略进位
+     */
+    void addP(int[] z) {
+        long c = 0;
+        for (int i = 0; i < this.size; i++) {
+            c += (z[i] & M) + (this.pWords[i] & M);
+            z[i] = (int) c;
+            c >>>= 32;
+        }
+    }
+
+    BigInteger getP() {
+        return p;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * 将非负大数写入 z 的低 size 个字,超出部分忽略
+     */
+    void toWords(BigInteger x, int[] z) {
+        byte[] bytes = x.toByteArray();
+        for (int i = 0; i < this.size; i++) {
+            int w = 0;
+            for (int j = 0; j < 4; j++) {
+                int index = bytes.length - 1 - (i * 4 + j);
+                if (index >= 0) {
+                    w |= (bytes[index] & 0xff) << (j * 8);
+                }
+            }
+            z[i] = w;
+        }
+    }
+
+    /**
+     * 将 x 的低 size 个字转换为非负大数
+     */
+    BigInteger fromWords(int[] x) {
+        byte[] bytes = new byte[this.size * 4 + 1];
+        for (int i = 0; i < this.size; i++) {
+            int w = x[i];
+            int index = bytes.length - 1 - i * 4;
+            bytes[index] = (byte) w;
+            bytes[index - 1] = (byte) (w >>> 8);
+            bytes[index - 2] = (byte) (w >>> 16);
+            bytes[index - 3] = (byte) (w >>> 24);
+        }
+        return new BigInteger(bytes);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * 固定基点的定窗预计算表.
+ * <p>
+ * 将标量 k 按 w bit 切分为 k = Σ d[i] * 2 ^ (w * i),预先计算每一行 i 的 j * 2 ^ (w * i) * B (1 <= j < 2 ^ w),
+ * 于是 [k]B = Σ table[i][d[i]],只需约 bits / w 次混合加法且无需倍点.
+ * 表中的点均已转换为仿射坐标,构建完成后只读,可在多个线程间共享.
+ * <p>
+ * 表可以存储在堆内,也可以存储在堆外的直接内存中以减轻大量缓存表时的 GC 压力,
+ * 堆外内存在表对象被回收后释放.
+ */
+final class FixedBaseTable {
+
+    /**
+     * 默认窗口宽度: 256 bit 的标量只需 64 次加法,表大小约 60 KB
+     */
+    static final int WIDTH = 4;
+
+    private final FPField field;
+    private final int width;
+    private final int rows;
+    /**
+     * 每行的点数,即 2 ^ w - 1
+     */
+    private final int count;
+    /**
+     * 依次存储每行每个点的 x, y,每个坐标占 size 个字
+     */
+    private final IntBuffer table;
+
+    private FixedBaseTable(FPField field, int width, int rows, IntBuffer table) {
+        this.field = field;
+        this.width = width;
+        this.rows = rows;
+        this.count = (1 << width) - 1;
+        this.table = table;
+    }
+
+    /**
+     * 构建基点 base 的预计算表
+     *
+     * @param curve 椭圆曲线
+     * @param base  基点
+     * @param bits  标量的最大比特数
+     * @param width 窗口宽度
+     * @return 预计算表,当某个倍点为无穷远点(基点的阶过小)时返回 null
+     */
+    static FixedBaseTable build(ECOverFP curve, ECPoint base, int bits, int width) {
+        return build(curve, base, bits, width, false);
+    }
+
+    /**
+     * 构建基点 base 的预计算表
+     *
+     * @param curve  椭圆曲线
+     * @param base   基点
+     * @param bits   标量的最大比特数
+     * @param width  窗口宽度
+     * @param direct 是否存储在堆外内存
+     * @return 预计算表,当某个倍点为无穷远点(基点的阶过小)时返回 null
+     */
+    static FixedBaseTable build(ECOverFP curve, ECPoint base, int bits, int width, boolean direct) {
+        if (base.isInfinity()) {
+            return null;
+        }
+        FPField f = curve.getField();
+        JacobianArithmetic arithmetic = curve.newArithmetic();
+        int rows = (bits + width - 1) / width;
+        int count = (1 << width) - 1;
+        JacobianPoint[] points = new JacobianPoint[rows * count];
+        JacobianPoint b = arithmetic.create();
+        arithmetic.setAffine(base, b);
+        for (int i = 0; i < rows; i++) {
+            int offset = i * count;
+            points[offset] = arithmetic.create();
+            arithmetic.copy(b, points[offset]);
+            for (int j = 1; j < count; j++) {
+                points[offset + j] = arithmetic.create();
+                arithmetic.add(points[offset + j - 1], b, points[offset + j]);
+            }
+            // 下一行的基点 2 ^ w * b
+            arithmetic.add(points[offset + count - 1], b, b);
+        }
+        if (!arithmetic.normalizeAll(points)) {
+            return null;
+        }
+        int size = f.getSize();
+        int length = points.length * 2 * size;
+        IntBuffer table = direct
+                ? ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder()).asIntBuffer()
+                : IntBuffer.allocate(length);
+        for (JacobianPoint point : points) {
+            table.put(point.x, 0, size);
+            table.put(point.y, 0, size);
+        }
+        return new FixedBaseTable(f, width, rows, table);
+    }
+
+    /**
+     * 标量是否在表的覆盖范围内
+     */
+    boolean covers(BigInteger k) {
+        return k.signum() >= 0 && k.bitLength() <= this.rows * this.width;
+    }
+
+    /**
+     * 表占用的字节数
+     */
+    long byteSize() {
+        return this.table.capacity() * 4L;
+    }
+
+    /**
+     * r = [k]B,k 需在表的覆盖范围内
+     */
+    void multiply(JacobianArithmetic arithmetic, BigInteger k, JacobianPoint r) {
+        arithmetic.setInfinity(r);
+        this.multiplyAdd(arithmetic, k, r);
+    }
+
+    /**
+     * r = r + [k]B,k 需在表的覆盖范围内
+     */
+    void multiplyAdd(JacobianArithmetic arithmetic, BigInteger k, JacobianPoint r) {
+        FPField f = this.field;
+        int size = f.getSize();
+        int[] x = f.create();
+        int[] y = f.create();
+        int[] words = toWords(k, this.rows * this.width);
+        for (int i = 0; i < this.rows; i++) {
+            int d = digit(words, i * this.width, this.width);
+            if (d == 0) {
+                continue;
+            }
+            int index = (i * this.count + d - 1) * 2 * size;
+            for (int j = 0; j < size; j++) {
+                x[j] = this.table.get(index + j);
+                y[j] = this.table.get(index + size + j);
+            }
+            arithmetic.addAffine(r, x, y, r);
+        }
+    }
+
+    /**
+     * 将非负标量转换为小端序的字,末尾多留一个 0 字便于跨字取位
+     */
+    static int[] toWords(BigInteger k, int bits) {
+        int[] words = new int[((bits + 31) >>> 5) + 1];
+        byte[] bytes = k.toByteArray();
+        for (int i = 0; i < bytes.length && (i >>> 2) < words.length; i++) {
+            words[i >>> 2] |= (bytes[bytes.length - 1 - i] & 0xff) << ((i & 3) << 3);
+        }
+        return words;
+    }
+
+    /**
+     * 取出自第 offset 位开始的 width (width < 32) 位
+     */
+    static int digit(int[] words, int offset, int width) {
+        int index = offset >>> 5;
+        int shift = offset & 31;
+        int d = words[index] >>> shift;
+        if (shift + width > 32) {
+            d |= words[index + 1] << (32 - shift);
+        }
+        return d & ((1 << width) - 1);
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import java.math.BigInteger;
+
+/**
+ * 雅可比坐标下的点运算.
+ * <p>
+ * 持有运算过程中的临时变量,使倍点与加法不分配任何对象.
+ * 非线程安全,每次标量乘等运算各自创建一个实例.
+ * 所有运算的结果写入最后一个参数,允许与输入参数为同一个点.
+ */
+final class JacobianArithmetic {
+
+    private final FPField field;
+    /**
+     * 椭圆曲线方程参数 a
+     */
+    private final int[] a;
+    /**
+     * a = -3 mod p 时,倍点可使用更少乘法的公式
+     */
+    private final boolean aIsMinus3;
+
+    private final int[] t1;
+    private final int[] t2;
+    private final int[] t3;
+    private final int[] t4;
+    private final int[] t5;
+    private final int[] t6;
+    private final int[] t7;
+
+    JacobianArithmetic(FPField field, int[] a, boolean aIsMinus3) {
+        this.field = field;
+        this.a = a;
+        this.aIsMinus3 = aIsMinus3;
+        this.t1 = field.create();
+        this.t2 = field.create();
+        this.t3 = field.create();
+        this.t4 = field.create();
+        this.t5 = field.create();
+        this.t6 = field.create();
+        this.t7 = field.create();
+    }
+
+    FPField getField() {
+        return field;
+    }
+
+    /**
+     * 创建一个无穷远点
+     */
+    JacobianPoint create() {
+        return new JacobianPoint(this.field);
+    }
+
+    boolean isInfinity(JacobianPoint p) {
+        return this.field.isZero(p.z);
+    }
+
+    void setInfinity(JacobianPoint r) {
+        this.field.one(r.x);
+        this.field.one(r.y);
+        this.field.zero(r.z);
+    }
+
+    /**
+     * 由仿射坐标 (x, y) 设置点,Z = 1
+     */
+    void setAffine(int[] x, int[] y, JacobianPoint r) {
+        this.field.copy(x, r.x);
+        this.field.copy(y, r.y);
+        this.field.one(r.z);
+    }
+
+    /**
+     * 由仿射坐标的 {@link ECPoint} 设置点
+     */
+    void setAffine(ECPoint p, JacobianPoint r) {
+        if (p.isInfinity()) {
+            this.setInfinity(r);
+            return;
+        }
+        this.field.fromBigInteger(p.getX(), r.x);
+        this.field.fromBigInteger(p.getY(), r.y);
+        this.field.one(r.z);
+    }
+
+    void copy(JacobianPoint p, JacobianPoint r) {
+        this.field.copy(p.x, r.x);
+        this.field.copy(p.y, r.y);
+        this.field.copy(p.z, r.z);
+    }
+
+    /**
+     * 倍点: 2 * p.
+     * <pre>{@code
+     * S = 4 * X * Y ^ 2
+     * M = 3 * X ^ 2 + a * Z ^ 4      当 a = -3 时, M = 3 * (X - Z ^ 2) * (X + Z ^ 2)
+     * X' = M ^ 2 - 2 * S
+     * Y' = M * (S - X') - 8 * Y ^ 4
+     * Z' = 2 * Y * Z
+     * }</pre>
+     */
+    void twice(JacobianPoint p, JacobianPoint r) {
+        FPField f = this.field;
+        if (f.isZero(p.z) || f.isZero(p.y)) {
+            this.setInfinity(r);
+            return;
+        }
+        // t1 = Y ^ 2
+        f.square(p.y, t1);
+        // t2 = S
+        f.multiply(p.x, t1, t2);
+        f.twice(t2, t2);
+        f.twice(t2, t2);
+        // t3 = Z ^ 2
+        f.square(p.z, t3);
+        // t4 = M
+        if (this.aIsMinus3) {
+            f.subtract(p.x, t3, t4);
+            f.add(p.x, t3, t5);
+            f.multiply(t4, t5, t4);
+            f.twice(t4, t5);
+            f.add(t4, t5, t4);
+        } else {
+            f.square(p.x, t4);
+            f.twice(t4, t5);
+            f.add(t4, t5, t4);
+            f.square(t3, t5);
+            f.multiply(this.a, t5, t5);
+            f.add(t4, t5, t4);
+        }
+        // t1 = 8 * Y ^ 4
+        f.square(t1, t1);
+        f.twice(t1, t1);
+        f.twice(t1, t1);
+        f.twice(t1, t1);
+        // Z' = 2 * Y * Z
+        f.multiply(p.y, p.z, r.z);
+        f.twice(r.z, r.z);
+        // X' = M ^ 2 - 2 * S
+        f.square(t4, t5);
+        f.twice(t2, t6);
+        f.subtract(t5, t6, r.x);
+        // Y' = M * (S - X') - 8 * Y ^ 4
+        f.subtract(t2, r.x, t6);
+        f.multiply(t4, t6, t6);
+        f.subtract(t6, t1, r.y);
+    }
+
+    /**
+     * 混合加法: 雅可比坐标的 p 加仿射坐标的 (x, y).
+     * <pre>{@code
+     * U = x * Z ^ 2,  S = y * Z ^ 3
+     * H = U - X,      R = S - Y
+     * X' = R ^ 2 - H ^ 3 - 2 * X * H ^ 2
+     * Y' = R * (X * H ^ 2 - X') - Y * H ^ 3
+     * Z' = Z * H
+     * }</pre>
+     */
+    void addAffine(JacobianPoint p, int[] x, int[] y, JacobianPoint r) {
+        FPField f = this.field;
+        if (f.isZero(p.z)) {
+            this.setAffine(x, y, r);
+            return;
+        }
+        // t1 = Z ^ 2
+        f.square(p.z, t1);
+        // t2 = U
+        f.multiply(x, t1, t2);
+        // t3 = S
+        f.multiply(y, p.z, t3);
+        f.multiply(t3, t1, t3);
+        // t2 = H, t3 = R
+        f.subtract(t2, p.x, t2);
+        f.subtract(t3, p.y, t3);
+        if (f.isZero(t2)) {
+            // 横坐标相同: 同一点则倍点,互为相反点则和为 0
+            if (f.isZero(t3)) {
+                this.twice(p, r);
+            } else {
+                this.setInfinity(r);
+            }
+            return;
+        }
+        this.addHR(p, t2, t3, r);
+    }
+
+    /**
+     * 加法: 均为雅可比坐标的 p + q
+     */
+    void add(JacobianPoint p, JacobianPoint q, JacobianPoint r) {
+        FPField f = this.field;
+        if (f.isZero(p.z)) {
+            this.copy(q, r);
+            return;
+        }
+        if (f.isZero(q.z)) {
+            this.copy(p, r);
+            return;
+        }
+        // t1 = Z1 ^ 2, t2 = Z2 ^ 2
+        f.square(p.z, t1);
+        f.square(q.z, t2);
+        // t3 = U1 = X1 * Z2 ^ 2, t4 = U2 = X2 * Z1 ^ 2
+        f.multiply(p.x, t2, t3);
+        f.multiply(q.x, t1, t4);
+        // t5 = S1 = Y1 * Z2 ^ 3, t6 = S2 = Y2 * Z1 ^ 3
+        f.multiply(p.y, q.z, t5);
+        f.multiply(t5, t2, t5);
+        f.multiply(q.y, p.z, t6);
+        f.multiply(t6, t1, t6);
+        // t4 = H, t6 = R
+        f.subtract(t4, t3, t4);
+        f.subtract(t6, t5, t6);
+        if (f.isZero(t4)) {
+            if (f.isZero(t6)) {
+                this.twice(p, r);
+            } else {
+                this.setInfinity(r);
+            }
+            return;
+        }
+        // t1 = H ^ 2, t2 = H ^ 3, t3 = V = U1 * H ^ 2
+        f.square(t4, t1);
+        f.multiply(t4, t1, t2);
+        f.multiply(t3, t1, t3);
+        // Z' = Z1 * Z2 * H
+        f.multiply(p.z, q.z, r.z);
+        f.multiply(r.z, t4, r.z);
+        // t7 = X' = R ^ 2 - H ^ 3 - 2 * V
+        f.square(t6, t7);
+        f.subtract(t7, t2, t7);
+        f.twice(t3, t1);
+        f.subtract(t7, t1, t7);
+        // Y' = R * (V - X') - S1 * H ^ 3
+        f.subtract(t3, t7, t3);
+        f.multiply(t6, t3, t3);
+        f.multiply(t5, t2, t5);
+        f.subtract(t3, t5, r.y);
+        f.copy(t7, r.x);
+    }
+
+    /**
+     * 混合加法的后半部分,t1 = Z ^ 2 已不再需要
+     *
+     * @param h H = U - X
+     * @param s R = S - Y
+     */
+    private void addHR(JacobianPoint p, int[] h, int[] s, JacobianPoint r) {
+        FPField f = this.field;
+        // t4 = H ^ 2, t5 = H ^ 3, t6 = V = X * H ^ 2
+        f.square(h, t4);
+        f.multiply(h, t4, t5);
+        f.multiply(p.x, t4, t6);
+        // Z' = Z * H
+        f.multiply(p.z, h, r.z);
+        // t7 = X' = R ^ 2 - H ^ 3 - 2 * V
+        f.square(s, t7);
+        f.subtract(t7, t5, t7);
+        f.twice(t6, t4);
+        f.subtract(t7, t4, t7);
+        // Y' = R * (V - X') - Y * H ^ 3
+        f.subtract(t6, t7, t6);
+        f.multiply(s, t6, t6);
+        f.multiply(p.y, t5, t5);
+        f.subtract(t6, t5, r.y);
+        f.copy(t7, r.x);
+    }
+
+    /**
+     * 批量转换为 Z = 1 的形式,转换后 x, y 即仿射坐标.
+     * <p>
+     * 使用 Montgomery 同时求逆的技巧: 先累乘所有 Z,对乘积求一次模逆,再反向逐个还原出每个 Z ^ -1,
+     * 因此 n 个点只需一次模逆与约 3n 次乘法.
+     *
+     * @param points 待转换的点,无穷远点保持不变
+     * @return 是否所有点都不是无穷远点
+     */
+    boolean normalizeAll(JacobianPoint[] points) {
+        FPField f = this.field;
+        int n = points.length;
+        if (n == 0) {
+            return true;
+        }
+        boolean finite = true;
+        // products[i] = Z0 * Z1 * ... * Zi,跳过无穷远点
+        int[][] products = new int[n][];
+        int[] acc = f.create();
+        f.one(acc);
+        for (int i = 0; i < n; i++) {
+            if (f.isZero(points[i].z)) {
+                finite = false;
+            } else {
+                f.multiply(acc, points[i].z, acc);
+            }
+            products[i] = f.create();
+            f.copy(acc, products[i]);
+        }
+        if (f.isZero(acc)) {
+            return false;
+        }
+        // inv = (Z0 * ... * Zi) ^ -1
+        int[] inv = f.create();
+        f.invert(acc, inv);
+        for (int i = n - 1; i >= 0; i--) {
+            JacobianPoint p = points[i];
+            if (f.isZero(p.z)) {
+                continue;
+            }
+            // t1 = Zi ^ -1, inv = (Z0 * ... * Zi-1) ^ -1
+            if (i > 0) {
+                f.multiply(inv, products[i - 1], t1);
+            } else {
+                f.copy(inv, t1);
+            }
+            f.multiply(inv, p.z, inv);
+            f.square(t1, t2);
+            f.multiply(p.x, t2, p.x);
+            f.multiply(t2, t1, t2);
+            f.multiply(p.y, t2, p.y);
+            f.one(p.z);
+        }
+        return finite;
+    }
+
+    /**
+     * 转换为仿射坐标: (X / Z ^ 2, Y / Z ^ 3),仅需一次模逆
+     */
+    ECPoint toAffine(JacobianPoint p) {
+        FPField f = this.field;
+        if (f.isZero(p.z)) {
+            return ECPoint.INFINITY;
+        }
+        f.invert(p.z, t1);
+        f.square(t1, t2);
+        f.multiply(p.x, t2, t3);
+        f.multiply(t2, t1, t2);
+        f.multiply(p.y, t2, t4);
+        BigInteger x = f.toBigInteger(t3);
+        BigInteger y = f.toBigInteger(t4);
+        return new ECPoint(x, y);
+    }
+}
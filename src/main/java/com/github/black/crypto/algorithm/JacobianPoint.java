@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+/**
+ * 雅可比射影坐标下的点 (X : Y : Z),对应仿射坐标 (X / Z ^ 2, Y / Z ^ 3),Z = 0 时为无穷远点.
+ * <p>
+ * 仅用于曲线内部运算,避免每次加法/倍点都进行一次模逆,结果返回前再统一转换为仿射坐标的 {@link ECPoint}.
+ * 坐标为 {@link FPField} 的元素,运算时原地修改,因此该类是可变的.
+ */
+final class JacobianPoint {
+
+    final int[] x;
+    final int[] y;
+    final int[] z;
+
+    /**
+     * 构造一个无穷远点
+     */
+    JacobianPoint(FPField field) {
+        this.x = field.create();
+        this.y = field.create();
+        this.z = field.create();
+    }
+}
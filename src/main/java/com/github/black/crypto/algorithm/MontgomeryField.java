@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import java.math.BigInteger;
+
+/**
+ * 基于 Montgomery 乘法的通用素域运算,适用于任意不超过 {@link #MAX_BITS} bit 的奇素数 p.
+ * <p>
+ * 元素以 Montgomery 形式 x * R mod p 存储,其中 R = 2 ^ (32 * size),
+ * 乘法 x * y * R ^ -1 mod p 只需乘法与移位,无需除法.
+ * 加减法与普通形式相同,仅在与大数互相转换时需要乘以 R 或 R ^ -1.
+ * <p>
+ * 乘法按列(product scanning)计算,每列得到的 m 暂存在结果数组的后 size 个字中,
+ * 因此元素数组长度为 2 * size,运算不分配任何对象,且结果可以与输入为同一数组.
+ */
+final class MontgomeryField extends FPField {
+
+    static final int MAX_BITS = 512;
+
+    /**
+     * -p ^ -1 mod 2 ^ 32
+     */
+    private final int pInv;
+    /**
+     * R mod p
+     */
+    private final BigInteger r;
+    /**
+     * R ^ -1 mod p
+     */
+    private final BigInteger rInv;
+    /**
+     * Montgomery 形式的 1,即 R mod p
+     */
+    private final int[] one;
+
+    MontgomeryField(BigInteger p) {
+        super(p);
+        if (!p.testBit(0) || p.bitLength() > MAX_BITS) {
+            throw new IllegalArgumentException("Montgomery field requires an odd p of at most " + MAX_BITS + " bits");
+        }
+        // 牛顿迭代求 p ^ -1 mod 2 ^ 32,每次迭代正确的位数翻倍
+        int p0 = this.pWords[0];
+        int inv = p0;
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - p0 * inv;
+        }
+        this.pInv = -inv;
+        this.r = BigInteger.ONE.shiftLeft(32 * this.size).mod(p);
+        this.rInv = this.r.modInverse(p);
+        this.one = this.create();
+        this.toWords(this.r, this.one);
+    }
+
+    @Override
+    int[] create() {
+        return new int[this.size * 2];
+    }
+
+    @Override
+    void fromBigInteger(BigInteger x, int[] z) {
+        this.toWords(x.mod(this.p).multiply(this.r).mod(this.p), z);
+    }
+
+    @Override
+    BigInteger toBigInteger(int[] x) {
+        return this.fromWords(x).multiply(this.rInv).mod(this.p);
+    }
+
+    @Override
+    void one(int[] z) {
+        this.copy(this.one, z);
+    }
+
+    /**
+     * z = x * y * R ^ -1 mod p.
+     * <p>
+     * 第 k 列累加 x[i] * y[k - i] 与 m[i] * p[k - i],
+     * 前 size 列求出 m[k] 使该列的低 32 bit 为 0 并将其舍去,后 size 列依次输出结果的各个字.
+     * 累加器以 lo + hi * 2 ^ 32 的形式保存,避免 64 bit 溢出.
+     */
+    @Override
+    void multiply(int[] x, int[] y, int[] z) {
+        final int s = this.size;
+        final int[] p = this.pWords;
+        long lo = 0, hi = 0, t;
+        for (int k = 0; k < s; k++) {
+            for (int i = 0; i < k; i++) {
+                t = (x[i] & M) * (y[k - i] & M);
+                lo += t & M;
+                hi += t >>> 32;
+                t = (z[s + i] & M) * (p[k - i] & M);
+                lo += t & M;
+                hi += t >>> 32;
+            }
+            t = (x[k] & M) * (y[0] & M);
+            lo += t & M;
+            hi += t >>> 32;
+            int m = (int) lo * this.pInv;
+            z[s + k] = m;
+            t = (m & M) * (p[0] & M);
+            lo += t & M;
+            hi += t >>> 32;
+            lo = (lo >>> 32) + hi;
+            hi = 0;
+        }
+        for (int k = s; k < 2 * s; k++) {
+            for (int i = k - s + 1; i < s; i++) {
+                t = (x[i] & M) * (y[k - i] & M);
+                lo += t & M;
+                hi += t >>> 32;
+                t = (z[s + i] & M) * (p[k - i] & M);
+                lo += t & M;
+                hi += t >>> 32;
+            }
+            // x[k - s], y[k - s] 在之后的列中不再使用,因此即便 z 与输入为同一数组也可以直接写入
+            z[k - s] = (int) lo;
+            lo = (lo >>> 32) + hi;
+            hi = 0;
+        }
+        // 结果小于 2p
+        if (lo != 0 || this.compareToP(z) >= 0) {
+            this.subtractP(z);
+        }
+    }
+}
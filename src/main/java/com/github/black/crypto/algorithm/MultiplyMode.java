@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+/**
+ * 标量乘法的实现方式
+ */
+public enum MultiplyMode {
+
+    /**
+     * wNAF 与定窗预计算表,速度最快,但运算时间与标量相关
+     */
+    WNAF,
+    /**
+     * co-Z Montgomery 阶梯,每一位的域运算序列相同,步数与分支不依赖标量,适用于私钥参与的单标量乘法.
+     * 只对确定属于阶为 n 的子群的点使用阶梯,其余的点以及双标量乘法仍使用 wNAF.
+     * 标量的预处理 (k mod n) 由 BigInteger 完成,域运算也不保证与操作数无关,
+     * 因此只能消除标量相关的运算序列差异,不能保证严格的常数时间.
+     */
+    LADDER
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import com.github.black.crypto.util.LruCache;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 公钥预计算表的缓存.
+ * <p>
+ * 为频繁使用的公钥 P 构建与基点相同的定窗预计算表,此后 [k]P 与 [k]G 一样无需倍点,
+ * 验签 [s]G + [t]P 只需约 2 * bits / w 次混合加法.
+ * 构建一张表的开销约为一次普通标量乘的数倍,因此只适合反复验证少量公钥的场景.
+ * <p>
+ * 为避免偶尔出现的公钥触发构建并淘汰热点公钥的表,公钥被使用 admitAfter 次后才构建预计算表,
+ * 此前直接使用 {@link ECC#multiplyAdd}; {@link #preload} 不受此限制.
+ * 达到次数时只有一个线程负责构建,构建在缓存的锁外进行,其余线程在构建完成前同样直接计算.
+ * <p>
+ * 缓存按表占用的字节数限制总大小,超出时淘汰最久未使用的表. 线程安全,可在多个签名器之间共享.
+ */
+public final class PrecomputeCache {
+
+    /**
+     * 默认内存上限 64 MB,SM2 曲线下约可缓存 1000 个公钥
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /**
+     * 默认在公钥第 3 次使用时构建预计算表
+     */
+    public static final int DEFAULT_ADMIT_AFTER = 3;
+
+    /**
+     * 使用次数计数器的最少条目数
+     */
+    private static final int MIN_COUNTERS = 1024;
+
+    private final ECC ecc;
+    private final boolean direct;
+    private final int admitAfter;
+    private final LruCache<ECPoint, FixedBaseTable> tables;
+    /**
+     * 尚未构建预计算表的公钥的使用次数
+     */
+    private final LruCache<ECPoint, AtomicInteger> counters;
+
+    /**
+     * 使用默认内存上限,表存储在堆内
+     *
+     * @param ecc 椭圆曲线
+     */
+    public PrecomputeCache(ECC ecc) {
+        this(ecc, DEFAULT_MAX_BYTES, false);
+    }
+
+    /**
+     * 使用默认的构建次数
+     *
+     * @param ecc      椭圆曲线
+     * @param maxBytes 所有表占用的内存上限
+     * @param direct   是否将表存储在堆外内存
+     */
+    public PrecomputeCache(ECC ecc, long maxBytes, boolean direct) {
+        this(ecc, maxBytes, direct, DEFAULT_ADMIT_AFTER);
+    }
+
+    /**
+     * @param ecc        椭圆曲线
+     * @param maxBytes   所有表占用的内存上限
+     * @param direct     是否将表存储在堆外内存
+     * @param admitAfter 公钥被使用多少次后构建预计算表,为 1 时首次使用即构建
+     */
+    public PrecomputeCache(ECC ecc, long maxBytes, boolean direct, int admitAfter) {
+        if (admitAfter < 1) {
+            throw new IllegalArgumentException("admitAfter must be positive");
+        }
+        this.ecc = ecc;
+        this.direct = direct;
+        this.admitAfter = admitAfter;
+        // 每段至少能容纳 4 张表
+        long tableBytes = (long) ecc.getField().getSize() * 8 * ((1 << FixedBaseTable.WIDTH) - 1)
+                * ((ecc.getN().bitLength() + FixedBaseTable.WIDTH - 1) / FixedBaseTable.WIDTH);
+        int concurrency = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / (tableBytes * 4)));
+        this.tables = new LruCache<>(maxBytes, FixedBaseTable::byteSize, concurrency);
+        // 计数器足以覆盖数倍于可缓存表数的公钥
+        this.counters = new LruCache<>(Math.max(MIN_COUNTERS, Math.min(1 << 16, maxBytes / tableBytes * 4)));
+    }
+
+    /**
+     * 计算 k1 * p1 + k2 * p2,基点与已缓存的公钥直接使用预计算表,未缓存的公钥先构建预计算表
+     */
+    public ECPoint multiplyAdd(BigInteger k1, ECPoint p1, BigInteger k2, ECPoint p2) {
+        FixedBaseTable t1 = this.table(p1);
+        FixedBaseTable t2 = this.table(p2);
+        if (t1 == null || t2 == null || !t1.covers(k1) || !t2.covers(k2)) {
+            return this.ecc.multiplyAdd(k1, p1, k2, p2);
+        }
+        JacobianArithmetic arithmetic = this.ecc.newArithmetic();
+        JacobianPoint r = arithmetic.create();
+        t1.multiply(arithmetic, k1, r);
+        t2.multiplyAdd(arithmetic, k2, r);
+        return arithmetic.toAffine(r);
+    }
+
+    /**
+     * 计算 k * p
+     */
+    public ECPoint multiply(ECPoint p, BigInteger k) {
+        FixedBaseTable table = this.table(p);
+        if (table == null || !table.covers(k)) {
+            return this.ecc.multiply(p, k);
+        }
+        JacobianArithmetic arithmetic = this.ecc.newArithmetic();
+        JacobianPoint r = arithmetic.create();
+        table.multiply(arithmetic, k, r);
+        return arithmetic.toAffine(r);
+    }
+
+    /**
+     * 预先为公钥构建预计算表,不受构建次数的限制
+     */
+    public void preload(ECPoint p) {
+        if (!p.isInfinity() && !p.equals(this.ecc.getG())) {
+            this.build(p);
+        }
+    }
+
+    /**
+     * 移除公钥的预计算表
+     */
+    public void evict(ECPoint p) {
+        this.tables.remove(p);
+        this.counters.remove(p);
+    }
+
+    public void clear() {
+        this.tables.clear();
+        this.counters.clear();
+    }
+
+    /**
+     * @return 已缓存的公钥数量
+     */
+    public int size() {
+        return this.tables.size();
+    }
+
+    /**
+     * @return 已缓存的表占用的字节数
+     */
+    public long byteSize() {
+        return this.tables.weight();
+    }
+
+    public ECC getECC() {
+        return ecc;
+    }
+
+    public int getAdmitAfter() {
+        return admitAfter;
+    }
+
+    /**
+     * @return 公钥的预计算表,尚未达到构建次数时返回 null
+     */
+    private FixedBaseTable table(ECPoint p) {
+        if (p.isInfinity()) {
+            return null;
+        }
+        if (p.equals(this.ecc.getG())) {
+            return this.ecc.getGTable();
+        }
+        FixedBaseTable table = this.tables.get(p);
+        if (table != null || !this.admit(p)) {
+            return table;
+        }
+        return this.build(p);
+    }
+
+    /**
+     * 记录一次使用
+     *
+     * @return 是否由当前线程构建预计算表,只有恰好达到构建次数的线程返回 true
+     */
+    private boolean admit(ECPoint p) {
+        if (this.admitAfter == 1) {
+            return true;
+        }
+        AtomicInteger counter = this.counters.computeIfAbsent(p, key -> new AtomicInteger());
+        if (counter.incrementAndGet() != this.admitAfter) {
+            return false;
+        }
+        this.counters.remove(p);
+        return true;
+    }
+
+    /**
+     * 构建预计算表并放入缓存,构建在缓存的锁外进行
+     */
+    private FixedBaseTable build(ECPoint p) {
+        return this.tables.computeIfAbsent(p,
+                key -> FixedBaseTable.build(this.ecc, key, this.ecc.getN().bitLength(), FixedBaseTable.WIDTH, this.direct));
+    }
+}
@@ -17,10 +17,17 @@
 package com.github.black.crypto.algorithm;
 
 import com.github.black.crypto.digests.SM3Digest;
-import com.github.black.crypto.util.PackUtil;
+import com.github.black.crypto.digests.SM3Kdf;
+import com.github.black.crypto.util.LruCache;
+import com.github.black.crypto.util.ParallelUtil;
 import com.github.black.crypto.util.RandomUtil;
 
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * GM/T 0003-2012 SM2 椭圆曲线公钥密码算法.
@@ -33,6 +40,11 @@ import java.math.BigInteger;
  */
 public class SM2 extends ECC {
 
+    /**
+     * GM/T 0009-2012 规定的默认用户标识,须先于 SPEC 初始化
+     */
+    private static final byte[] DEFAULT_ID = "1234567812345678".getBytes(StandardCharsets.US_ASCII);
+
     /**
      * PDF5.2 参数定义
      */
@@ -46,6 +58,16 @@ public class SM2 extends ECC {
             new BigInteger("1", 16)
     );
 
+    /**
+     * 批量生成秘钥对时,每个并行任务处理的秘钥对数量
+     */
+    private static final int BATCH_CHUNK = 64;
+
+    /**
+     * Z 缓存的最大条目数
+     */
+    private static final int Z_CACHE_SIZE = 4096;
+
     /**
      * 缓存 z 计算中用到的 byte array,避免重复计算
      */
@@ -54,6 +76,16 @@ public class SM2 extends ECC {
     private final byte[] arrayGX;
     private final byte[] arrayGY;
 
+    /**
+     * 已吸收默认用户标识与曲线参数的 SM3 中间状态,只读,每次使用时复制
+     */
+    private final SM3Digest defaultIdState;
+
+    /**
+     * 按 (用户标识, 公钥) 缓存的 Z
+     */
+    private final LruCache<ZKey, byte[]> zCache;
+
     /**
      * 构造一个基于有限域上的椭圆曲线的加密算法
      *
@@ -71,6 +103,9 @@ public class SM2 extends ECC {
         this.arrayB = b.toByteArray();
         this.arrayGX = gx.toByteArray();
         this.arrayGY = gy.toByteArray();
+        this.defaultIdState = new SM3Digest();
+        this.updatePrefix(this.defaultIdState, DEFAULT_ID);
+        this.zCache = new LruCache<>(Z_CACHE_SIZE);
     }
 
     /**
@@ -82,19 +117,92 @@ public class SM2 extends ECC {
     public SM2KeyPair generateKeyPair(byte[] id) {
         BigInteger privateKey = RandomUtil.secureRandomBigDecimal(this.getN());
         ECPoint publicKey = this.multiplyG(privateKey);
-        byte[] z = this.generateZ(id, publicKey);
+        byte[] z = this.computeZ(id, publicKey);
         return new SM2KeyPair(privateKey, publicKey, id, z);
     }
 
+    /**
+     * 根据用户标识批量生成秘钥对,使用公共的 ForkJoin 线程池
+     *
+     * @param ids 用户标识
+     * @return 秘钥对,与 ids 一一对应
+     * @see #generateKeyPairs(List, ForkJoinPool)
+     */
+    public List<SM2KeyPair> generateKeyPairs(List<byte[]> ids) {
+        return this.generateKeyPairs(ids, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 根据用户标识批量生成秘钥对.
+     * <p>
+     * 各公钥的标量乘法在线程池中并行计算,结果保持雅可比坐标,
+     * 再以 Montgomery 同时求逆的技巧统一转换为仿射坐标,整批只需一次模逆,最后并行计算各用户的 Z.
+     *
+     * @param ids  用户标识
+     * @param pool 执行并行计算的线程池
+     * @return 秘钥对,与 ids 一一对应
+     */
+    public List<SM2KeyPair> generateKeyPairs(List<byte[]> ids, ForkJoinPool pool) {
+        int size = ids.size();
+        BigInteger[] privateKeys = new BigInteger[size];
+        JacobianPoint[] points = new JacobianPoint[size];
+        ParallelUtil.forEachChunk(0, size, BATCH_CHUNK, pool, (from, to) -> {
+            JacobianArithmetic arithmetic = this.newArithmetic();
+            for (int i = from; i < to; i++) {
+                privateKeys[i] = RandomUtil.secureRandomBigDecimal(this.getN());
+                points[i] = arithmetic.create();
+                this.multiplyG(arithmetic, privateKeys[i], points[i]);
+            }
+        });
+        this.newArithmetic().normalizeAll(points);
+        SM2KeyPair[] keyPairs = new SM2KeyPair[size];
+        ParallelUtil.forEachChunk(0, size, BATCH_CHUNK, pool, (from, to) -> {
+            FPField f = this.getField();
+            for (int i = from; i < to; i++) {
+                ECPoint publicKey = new ECPoint(f.toBigInteger(points[i].x), f.toBigInteger(points[i].y));
+                byte[] id = ids.get(i);
+                keyPairs[i] = new SM2KeyPair(privateKeys[i], publicKey, id, this.computeZ(id, publicKey));
+            }
+        });
+        return new ArrayList<>(Arrays.asList(keyPairs));
+    }
+
     /**
      * 5.5.用户其他信息
+     * <p>
+     * 结果按 (用户标识, 公钥) 缓存,验签与秘钥交换中反复出现的对方 Z 无需重新计算.
+     * 新生成的秘钥对直接计算 Z,不占用缓存.
      *
      * @param id        用户的可辨别标识
      * @param publicKey 公钥
      * @return 用户标识信息
      */
     public byte[] generateZ(byte[] id, ECPoint publicKey) {
-        SM3Digest sm3 = new SM3Digest();
+        byte[] z = this.zCache.computeIfAbsent(new ZKey(id.clone(), publicKey), key -> this.computeZ(key.id, key.publicKey));
+        return z.clone();
+    }
+
+    /**
+     * 计算 Z = SM3(ENTL || ID || a || b || gx || gy || px || py),默认用户标识从预先计算的中间状态开始
+     */
+    private byte[] computeZ(byte[] id, ECPoint publicKey) {
+        SM3Digest sm3;
+        if (Arrays.equals(id, DEFAULT_ID)) {
+            sm3 = this.defaultIdState.clone();
+        } else {
+            sm3 = new SM3Digest();
+            this.updatePrefix(sm3, id);
+        }
+        // 公钥
+        sm3.update(publicKey.getX().toByteArray());
+        sm3.update(publicKey.getY().toByteArray());
+        return sm3.digest();
+    }
+
+    /**
+     * 吸收 ENTL || ID || a || b || gx || gy
+     */
+    private void updatePrefix(SM3Digest sm3, byte[] id) {
         // ENTL
         int len = id.length * 8;
         sm3.update((byte) (len >> 8 & 255));
@@ -106,10 +214,6 @@ public class SM2 extends ECC {
         sm3.update(arrayB);
         sm3.update(arrayGX);
         sm3.update(arrayGY);
-        // 公钥
-        sm3.update(publicKey.getX().toByteArray());
-        sm3.update(publicKey.getY().toByteArray());
-        return sm3.digest();
     }
 
     /**
@@ -120,21 +224,37 @@ public class SM2 extends ECC {
      * @return 密钥数据
      */
     public byte[] kdf(int k, byte[]... zs) {
-        byte[] rst = new byte[k];
-        SM3Digest sm3 = new SM3Digest();
-        int ct = 0, offset = 0;
-        byte[] buff = new byte[4];
-        while (offset < k) {
-            sm3.reset();
-            for (byte[] z : zs) {
-                sm3.update(z);
+        return new SM3Kdf(zs).generate(k);
+    }
+
+    /**
+     * Z 缓存的键,持有用户标识的副本
+     */
+    private static final class ZKey {
+
+        private final byte[] id;
+        private final ECPoint publicKey;
+
+        ZKey(byte[] id, ECPoint publicKey) {
+            this.id = id;
+            this.publicKey = publicKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
             }
-            PackUtil.intToBigEndian(++ct, buff, 0);
-            sm3.update(buff);
-            int len = Math.min(32, k - offset);
-            System.arraycopy(sm3.digest(), 0, rst, offset, len);
-            offset += len;
+            if (!(o instanceof ZKey)) {
+                return false;
+            }
+            ZKey key = (ZKey) o;
+            return Arrays.equals(id, key.id) && publicKey.equals(key.publicKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(id) + publicKey.hashCode();
         }
-        return rst;
     }
 }
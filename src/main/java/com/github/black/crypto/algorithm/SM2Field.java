@@ -0,0 +1,385 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import java.math.BigInteger;
+
+/**
+ * SM2 推荐曲线素域上的专用运算.
+ * <p>
+ * p = 2 ^ 256 - 2 ^ 224 - 2 ^ 96 + 2 ^ 64 - 1 是广义梅森素数,
+ * 因此 2 ^ 256 ≡ 2 ^ 224 + 2 ^ 96 - 2 ^ 64 + 1 (mod p),
+ * 乘积的高位可以通过加减折叠到低位,无需除法.
+ * 元素固定为 8 个 32 bit 的字,乘法全部展开在局部变量中完成,不分配任何对象.
+ */
+final class SM2Field extends FPField {
+
+    static final BigInteger P = new BigInteger("FFFFFFFEFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF00000000FFFFFFFFFFFFFFFF", 16);
+
+    SM2Field() {
+        super(P);
+    }
+
+    @Override
+    void fromBigInteger(BigInteger x, int[] z) {
+        this.toWords(x.mod(P), z);
+    }
+
+    @Override
+    BigInteger toBigInteger(int[] x) {
+        return this.fromWords(x);
+    }
+
+    @Override
+    void one(int[] z) {
+        this.zero(z);
+        z[0] = 1;
+    }
+
+    /**
+     * p ≡ 3 (mod 4),√x = x ^ ((p + 1) / 4),其中
+     * (p + 1) / 4 = 2 ^ 254 - 2 ^ 222 - 2 ^ 94 + 2 ^ 62,
+     * 二进制自高位起依次为 31 个 1, 1 个 0, 128 个 1, 31 个 0, 1 个 1, 62 个 0.
+     * <p>
+     * 使用固定的加法链: 先得到 x ^ (2 ^ 31 - 1) 与 x ^ (2 ^ 32 - 1),再按指数的比特拼接,
+     * 共 254 次平方与 13 次乘法,而通用的平方-乘约需 254 次平方与 160 次乘法.
+     */
+    @Override
+    boolean sqrt(int[] x, int[] z) {
+        int[] x2 = this.create();
+        int[] x3 = this.create();
+        int[] x6 = this.create();
+        int[] x12 = this.create();
+        int[] t = this.create();
+        // x_k = x ^ (2 ^ k - 1)
+        this.square(x, x2);
+        this.multiply(x2, x, x2);
+        this.square(x2, x3);
+        this.multiply(x3, x, x3);
+        this.squares(x3, 3, x6);
+        this.multiply(x6, x3, x6);
+        this.squares(x6, 6, x12);
+        this.multiply(x12, x6, x12);
+        // t = x24
+        this.squares(x12, 12, t);
+        this.multiply(t, x12, t);
+        // t = x30
+        this.squares(t, 6, t);
+        this.multiply(t, x6, t);
+        // t = x31
+        this.square(t, t);
+        this.multiply(t, x, t);
+        // x2 = x32
+        this.square(t, x2);
+        this.multiply(x2, x, x2);
+        // 31 个 1 之后的 1 个 0
+        this.square(t, t);
+        // 128 个 1
+        for (int i = 0; i < 4; i++) {
+            this.squares(t, 32, t);
+            this.multiply(t, x2, t);
+        }
+        // 31 个 0 与 1 个 1
+        this.squares(t, 32, t);
+        this.multiply(t, x, t);
+        // 62 个 0
+        this.squares(t, 62, t);
+        return this.checkSqrt(x, t, z);
+    }
+
+    /**
+     * z = x ^ (2 ^ n)
+     */
+    private void squares(int[] x, int n, int[] z) {
+        this.square(x, z);
+        for (int i = 1; i < n; i++) {
+            this.square(z, z);
+        }
+    }
+
+    /**
+     * 按列计算 8 x 8 字的乘积,再进行快速约减
+     */
+    @Override
+    void multiply(int[] x, int[] y, int[] z) {
+        long x0 = x[0] & M, x1 = x[1] & M, x2 = x[2] & M, x3 = x[3] & M;
+        long x4 = x[4] & M, x5 = x[5] & M, x6 = x[6] & M, x7 = x[7] & M;
+        long y0 = y[0] & M, y1 = y[1] & M, y2 = y[2] & M, y3 = y[3] & M;
+        long y4 = y[4] & M, y5 = y[5] & M, y6 = y[6] & M, y7 = y[7] & M;
+        long t, lo, hi;
+
+        t = x0 * y0;
+        long c0 = t & M;
+        lo = t >>> 32;
+        hi = 0;
+        t = x0 * y1; lo += t & M; hi += t >>> 32;
+        t = x1 * y0; lo += t & M; hi += t >>> 32;
+        long c1 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * y2; lo += t & M; hi += t >>> 32;
+        t = x1 * y1; lo += t & M; hi += t >>> 32;
+        t = x2 * y0; lo += t & M; hi += t >>> 32;
+        long c2 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * y3; lo += t & M; hi += t >>> 32;
+        t = x1 * y2; lo += t & M; hi += t >>> 32;
+        t = x2 * y1; lo += t & M; hi += t >>> 32;
+        t = x3 * y0; lo += t & M; hi += t >>> 32;
+        long c3 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * y4; lo += t & M; hi += t >>> 32;
+        t = x1 * y3; lo += t & M; hi += t >>> 32;
+        t = x2 * y2; lo += t & M; hi += t >>> 32;
+        t = x3 * y1; lo += t & M; hi += t >>> 32;
+        t = x4 * y0; lo += t & M; hi += t >>> 32;
+        long c4 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * y5; lo += t & M; hi += t >>> 32;
+        t = x1 * y4; lo += t & M; hi += t >>> 32;
+        t = x2 * y3; lo += t & M; hi += t >>> 32;
+        t = x3 * y2; lo += t & M; hi += t >>> 32;
+        t = x4 * y1; lo += t & M; hi += t >>> 32;
+        t = x5 * y0; lo += t & M; hi += t >>> 32;
+        long c5 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * y6; lo += t & M; hi += t >>> 32;
+        t = x1 * y5; lo += t & M; hi += t >>> 32;
+        t = x2 * y4; lo += t & M; hi += t >>> 32;
+        t = x3 * y3; lo += t & M; hi += t >>> 32;
+        t = x4 * y2; lo += t & M; hi += t >>> 32;
+        t = x5 * y1; lo += t & M; hi += t >>> 32;
+        t = x6 * y0; lo += t & M; hi += t >>> 32;
+        long c6 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * y7; lo += t & M; hi += t >>> 32;
+        t = x1 * y6; lo += t & M; hi += t >>> 32;
+        t = x2 * y5; lo += t & M; hi += t >>> 32;
+        t = x3 * y4; lo += t & M; hi += t >>> 32;
+        t = x4 * y3; lo += t & M; hi += t >>> 32;
+        t = x5 * y2; lo += t & M; hi += t >>> 32;
+        t = x6 * y1; lo += t & M; hi += t >>> 32;
+        t = x7 * y0; lo += t & M; hi += t >>> 32;
+        long c7 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x1 * y7; lo += t & M; hi += t >>> 32;
+        t = x2 * y6; lo += t & M; hi += t >>> 32;
+        t = x3 * y5; lo += t & M; hi += t >>> 32;
+        t = x4 * y4; lo += t & M; hi += t >>> 32;
+        t = x5 * y3; lo += t & M; hi += t >>> 32;
+        t = x6 * y2; lo += t & M; hi += t >>> 32;
+        t = x7 * y1; lo += t & M; hi += t >>> 32;
+        long c8 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x2 * y7; lo += t & M; hi += t >>> 32;
+        t = x3 * y6; lo += t & M; hi += t >>> 32;
+        t = x4 * y5; lo += t & M; hi += t >>> 32;
+        t = x5 * y4; lo += t & M; hi += t >>> 32;
+        t = x6 * y3; lo += t & M; hi += t >>> 32;
+        t = x7 * y2; lo += t & M; hi += t >>> 32;
+        long c9 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x3 * y7; lo += t & M; hi += t >>> 32;
+        t = x4 * y6; lo += t & M; hi += t >>> 32;
+        t = x5 * y5; lo += t & M; hi += t >>> 32;
+        t = x6 * y4; lo += t & M; hi += t >>> 32;
+        t = x7 * y3; lo += t & M; hi += t >>> 32;
+        long c10 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x4 * y7; lo += t & M; hi += t >>> 32;
+        t = x5 * y6; lo += t & M; hi += t >>> 32;
+        t = x6 * y5; lo += t & M; hi += t >>> 32;
+        t = x7 * y4; lo += t & M; hi += t >>> 32;
+        long c11 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x5 * y7; lo += t & M; hi += t >>> 32;
+        t = x6 * y6; lo += t & M; hi += t >>> 32;
+        t = x7 * y5; lo += t & M; hi += t >>> 32;
+        long c12 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x6 * y7; lo += t & M; hi += t >>> 32;
+        t = x7 * y6; lo += t & M; hi += t >>> 32;
+        long c13 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x7 * y7; lo += t & M; hi += t >>> 32;
+        long c14 = lo & M;
+        lo = (lo >>> 32) + hi;
+        long c15 = lo;
+        reduce(c0, c1, c2, c3, c4, c5, c6, c7, c8, c9, c10, c11, c12, c13, c14, c15, z);
+    }
+
+    /**
+     * 平方时交叉项只需计算一次并乘 2
+     */
+    @Override
+    void square(int[] x, int[] z) {
+        long x0 = x[0] & M, x1 = x[1] & M, x2 = x[2] & M, x3 = x[3] & M;
+        long x4 = x[4] & M, x5 = x[5] & M, x6 = x[6] & M, x7 = x[7] & M;
+        long t, lo, hi;
+
+        t = x0 * x0;
+        long c0 = t & M;
+        lo = t >>> 32;
+        hi = 0;
+        t = x0 * x1; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        long c1 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * x2; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x1 * x1; lo += t & M; hi += t >>> 32;
+        long c2 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * x3; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x1 * x2; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        long c3 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * x4; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x1 * x3; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x2 * x2; lo += t & M; hi += t >>> 32;
+        long c4 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * x5; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x1 * x4; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x2 * x3; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        long c5 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * x6; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x1 * x5; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x2 * x4; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x3 * x3; lo += t & M; hi += t >>> 32;
+        long c6 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x0 * x7; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x1 * x6; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x2 * x5; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x3 * x4; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        long c7 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x1 * x7; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x2 * x6; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x3 * x5; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x4 * x4; lo += t & M; hi += t >>> 32;
+        long c8 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x2 * x7; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x3 * x6; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x4 * x5; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        long c9 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x3 * x7; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x4 * x6; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x5 * x5; lo += t & M; hi += t >>> 32;
+        long c10 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x4 * x7; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x5 * x6; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        long c11 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x5 * x7; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        t = x6 * x6; lo += t & M; hi += t >>> 32;
+        long c12 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x6 * x7; lo += (t & M) << 1; hi += (t >>> 32) << 1;
+        long c13 = lo & M;
+        lo = (lo >>> 32) + hi;
+        hi = 0;
+        t = x7 * x7; lo += t & M; hi += t >>> 32;
+        long c14 = lo & M;
+        lo = (lo >>> 32) + hi;
+        long c15 = lo;
+        reduce(c0, c1, c2, c3, c4, c5, c6, c7, c8, c9, c10, c11, c12, c13, c14, c15, z);
+    }
+
+    /**
+     * 将 16 个字的乘积约减到 [0, p).
+     * <p>
+     * 第 i (i >= 8) 个字代表 ci * 2 ^ (32 * (i - 8)) * 2 ^ 256,
+     * 即 ci * 2 ^ (32 * (i - 8)) * (2 ^ 224 + 2 ^ 96 - 2 ^ 64 + 1),
+     * 因此将其加到第 i - 1, i - 5, i - 8 个字并从第 i - 6 个字中减去.
+     * 自高向低折叠完成后再传播进位,溢出的部分继续折叠,最后至多减去一次 p.
+     */
+    private void reduce(long c0, long c1, long c2, long c3, long c4, long c5, long c6, long c7, long c8, long c9, long c10, long c11, long c12, long c13, long c14, long c15, int[] z) {
+        c14 += c15; c10 += c15; c9 -= c15; c7 += c15;
+        c13 += c14; c9 += c14; c8 -= c14; c6 += c14;
+        c12 += c13; c8 += c13; c7 -= c13; c5 += c13;
+        c11 += c12; c7 += c12; c6 -= c12; c4 += c12;
+        c10 += c11; c6 += c11; c5 -= c11; c3 += c11;
+        c9 += c10; c5 += c10; c4 -= c10; c2 += c10;
+        c8 += c9; c4 += c9; c3 -= c9; c1 += c9;
+        c7 += c8; c3 += c8; c2 -= c8; c0 += c8;
+        while (true) {
+            c1 += c0 >> 32;
+            c0 &= M;
+            c2 += c1 >> 32;
+            c1 &= M;
+            c3 += c2 >> 32;
+            c2 &= M;
+            c4 += c3 >> 32;
+            c3 &= M;
+            c5 += c4 >> 32;
+            c4 &= M;
+            c6 += c5 >> 32;
+            c5 &= M;
+            c7 += c6 >> 32;
+            c6 &= M;
+            long carry = c7 >> 32;
+            c7 &= M;
+            if (carry == 0) {
+                break;
+            }
+            c7 += carry;
+            c3 += carry;
+            c2 -= carry;
+            c0 += carry;
+        }
+        z[0] = (int) c0;
+        z[1] = (int) c1;
+        z[2] = (int) c2;
+        z[3] = (int) c3;
+        z[4] = (int) c4;
+        z[5] = (int) c5;
+        z[6] = (int) c6;
+        z[7] = (int) c7;
+        // p 的最高字为 0xFFFFFFFE,只有最高字不小于它时才可能需要减去 p
+        if (c7 >= 0xFFFFFFFEL && this.compareToP(z) >= 0) {
+            this.subtractP(z);
+        }
+    }
+}
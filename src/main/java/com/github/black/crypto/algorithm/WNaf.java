@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import java.math.BigInteger;
+
+/**
+ * 宽度为 w 的非相邻形式 (wNAF) 标量乘法.
+ * <p>
+ * 将标量 k 表示为 Σ d[i] * 2 ^ i,其中非零的 d[i] 均为奇数且 |d[i]| < 2 ^ (w - 1),
+ * 任意连续 w 位中至多一个非零,因此平均每 w + 1 位只需一次加法.
+ * 负数位直接使用对应点的相反点,预计算表只需存储 P, 3P, ..., (2 ^ (w - 1) - 1)P.
+ */
+final class WNaf {
+
+    static final int MIN_WIDTH = 4;
+    static final int MAX_WIDTH = 6;
+    static final int DEFAULT_WIDTH = 5;
+
+    private WNaf() {
+    }
+
+    /**
+     * 计算非负标量 k 的 wNAF 表示
+     *
+     * @param k     非负标量
+     * @param width 窗口宽度 w
+     * @return 小端序的各位,长度为 k.bitLength() + 1
+     */
+    static int[] generate(BigInteger k, int width) {
+        int bits = k.bitLength();
+        int[] naf = new int[bits + 1];
+        int[] words = FixedBaseTable.toWords(k, bits + width);
+        int pow2 = 1 << width;
+        int sign = pow2 >>> 1;
+        int carry = 0;
+        int pos = 0;
+        while (pos <= bits) {
+            // 当前位与进位相同时,该位加上进位后为 0
+            if (((words[pos >>> 5] >>> (pos & 31)) & 1) == carry) {
+                pos++;
+                continue;
+            }
+            int d = FixedBaseTable.digit(words, pos, width) + carry;
+            carry = (d & sign) != 0 ? 1 : 0;
+            if (carry != 0) {
+                d -= pow2;
+            }
+            naf[pos] = d;
+            pos += width;
+        }
+        return naf;
+    }
+
+    /**
+     * 交错计算 r = Σ [k_j]P_j: 所有标量共用一条倍点链,每一位依次加上各自的非零位.
+     *
+     * @param nafs   各标量的 wNAF 表示
+     * @param tables 各点的奇数倍点表,与 nafs 一一对应
+     */
+    static void interleave(JacobianArithmetic arithmetic, int[][] nafs, Table[] tables, JacobianPoint r) {
+        arithmetic.setInfinity(r);
+        int len = 0;
+        for (int[] naf : nafs) {
+            len = Math.max(len, naf.length);
+        }
+        for (int i = len - 1; i >= 0; i--) {
+            arithmetic.twice(r, r);
+            for (int j = 0; j < nafs.length; j++) {
+                int[] naf = nafs[j];
+                if (i < naf.length && naf[i] != 0) {
+                    tables[j].add(arithmetic, naf[i], r);
+                }
+            }
+        }
+    }
+
+    /**
+     * 奇数倍点表: P, 3P, 5P, ..., (2 ^ (w - 1) - 1)P,均为仿射坐标.
+     * 构建完成后只读,可在多个线程间共享.
+     */
+    static final class Table {
+
+        /**
+         * 窗口宽度 w
+         */
+        final int width;
+        final int[][] x;
+        final int[][] y;
+        /**
+         * -y,用于负数位
+         */
+        final int[][] negY;
+
+        private Table(int width, int[][] x, int[][] y, int[][] negY) {
+            this.width = width;
+            this.x = x;
+            this.y = y;
+            this.negY = negY;
+        }
+
+        /**
+         * 构建 p 的奇数倍点表
+         *
+         * @return 奇数倍点表,当其中存在无穷远点(p 的阶过小)时返回 null
+         */
+        static Table build(JacobianArithmetic arithmetic, ECPoint p, int width) {
+            JacobianPoint jp = arithmetic.create();
+            arithmetic.setAffine(p, jp);
+            return build(arithmetic, jp, width);
+        }
+
+        /**
+         * 构建 p 的奇数倍点表
+         *
+         * @return 奇数倍点表,当其中存在无穷远点(p 的阶过小)时返回 null
+         */
+        static Table build(JacobianArithmetic arithmetic, JacobianPoint p, int width) {
+            FPField f = arithmetic.getField();
+            int count = 1 << (width - 2);
+            JacobianPoint[] points = new JacobianPoint[count];
+            JacobianPoint twice = arithmetic.create();
+            arithmetic.twice(p, twice);
+            points[0] = arithmetic.create();
+            arithmetic.copy(p, points[0]);
+            for (int i = 1; i < count; i++) {
+                points[i] = arithmetic.create();
+                arithmetic.add(points[i - 1], twice, points[i]);
+            }
+            if (!arithmetic.normalizeAll(points)) {
+                return null;
+            }
+            int[][] x = new int[count][];
+            int[][] y = new int[count][];
+            int[][] negY = new int[count][];
+            for (int i = 0; i < count; i++) {
+                x[i] = points[i].x;
+                y[i] = points[i].y;
+                negY[i] = f.create();
+                f.negate(y[i], negY[i]);
+            }
+            return new Table(width, x, y, negY);
+        }
+
+        /**
+         * r = r + [d]P,d 为 wNAF 中的非零位
+         */
+        void add(JacobianArithmetic arithmetic, int d, JacobianPoint r) {
+            if (d > 0) {
+                int i = d >>> 1;
+                arithmetic.addAffine(r, this.x[i], this.y[i], r);
+            } else {
+                int i = (-d) >>> 1;
+                arithmetic.addAffine(r, this.x[i], this.negY[i], r);
+            }
+        }
+    }
+}
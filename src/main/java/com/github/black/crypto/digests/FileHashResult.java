@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.digests;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量计算文件杂凑值的结果.
+ * <p>
+ * 各项结果与输入的文件一一对应,按输入的顺序排列,重复的路径各自保留一项.
+ */
+public class FileHashResult {
+
+    private final List<Path> paths;
+    private final List<byte[]> digests;
+    private final List<Exception> failures;
+    private final int failureCount;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    FileHashResult(List<Path> paths, byte[][] digests, Exception[] failures, long[] bytes, long elapsedNanos) {
+        int count = 0;
+        long total = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            if (failures[i] != null) {
+                count++;
+            } else {
+                total += bytes[i];
+            }
+        }
+        this.paths = Collections.unmodifiableList(paths);
+        this.digests = Collections.unmodifiableList(Arrays.asList(digests));
+        this.failures = Collections.unmodifiableList(Arrays.asList(failures));
+        this.failureCount = count;
+        this.bytes = total;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return 文件的数量
+     */
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * @return 输入的文件路径
+     */
+    public List<Path> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return 各文件的杂凑值,与输入的路径一一对应,读取失败的文件为 null
+     */
+    public List<byte[]> getDigests() {
+        return digests;
+    }
+
+    /**
+     * @param index 文件在输入中的下标
+     * @return 文件的杂凑值,文件读取失败时返回 null
+     */
+    public byte[] getDigest(int index) {
+        return digests.get(index);
+    }
+
+    /**
+     * @return 各文件读取时的异常,与输入的路径一一对应,成功的文件为 null
+     */
+    public List<Exception> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @param index 文件在输入中的下标
+     * @return 文件读取时的异常,成功时返回 null
+     */
+    public Exception getFailure(int index) {
+        return failures.get(index);
+    }
+
+    /**
+     * @return 读取失败的文件数
+     */
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return 是否所有文件均读取成功
+     */
+    public boolean isSuccess() {
+        return failureCount == 0;
+    }
+
+    /**
+     * @return 成功杂凑的总字节数
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return 批量计算的总耗时,单位纳秒
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return 吞吐量,单位字节每秒
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files, %d failed, %d bytes in %.3f s (%.1f MB/s)",
+                paths.size(), failureCount, bytes, elapsedNanos / 1e9, getThroughput() / 1e6);
+    }
+}
@@ -126,25 +126,7 @@ public class SM2Digest extends MessageDigest {
 
     private byte[] kdfWithXor(byte[] msg, byte[]... zs) {
         byte[] rst = new byte[this.size];
-        SM3Digest sm3 = new SM3Digest();
-        int ct = 0, offset = 0;
-        byte[] buff = new byte[4];
-        while (offset < this.size) {
-            sm3.reset();
-            for (byte[] z : zs) {
-                sm3.update(z);
-            }
-            PackUtil.intToBigEndian(++ct, buff, 0);
-            sm3.update(buff);
-            byte[] digest = sm3.digest();
-            int len = Math.min(32, this.size - offset);
-            // xor
-            for (int i = 0; i < len; i++) {
-                int p = offset + i;
-                rst[p] = (byte) (msg[p] ^ digest[i]);
-            }
-            offset += len;
-        }
+        new SM3Kdf(zs).xor(msg, 0, rst, 0, this.size);
         return rst;
     }
 
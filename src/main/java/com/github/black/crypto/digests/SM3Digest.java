@@ -18,8 +18,10 @@ package com.github.black.crypto.digests;
 
 import com.github.black.crypto.util.PackUtil;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.util.Arrays;
 
 /**
  * GM/T 0004-2012 SM3 密码杂凑算法.
@@ -47,57 +49,32 @@ import java.util.Arrays;
  *
  * }</pre>
  */
-public class SM3Digest extends MessageDigest {
+public class SM3Digest extends MessageDigest implements Cloneable {
 
     /**
      * 4.1.初始值
      */
-    private static final int[] IV = new int[8];
+    static final int IV0 = 0x7380166F;
+    static final int IV1 = 0x4914B2B9;
+    static final int IV2 = 0x172442D7;
+    static final int IV3 = 0xDA8A0600;
+    static final int IV4 = 0xA96F30BC;
+    static final int IV5 = 0x163138AA;
+    static final int IV6 = 0xE38DEE4D;
+    static final int IV7 = 0xB0FB0E4E;
 
     /**
-     * 4.2.常量 (提前计算为 5.3.3 的 Tj rotateLeft (j mod 32))
+     * 4.2.常量,分别为第 0 轮与第 16 轮的 Tj rotateLeft (j mod 32)
      */
-    private static final int[] T = new int[64];
-
-    static {
-        IV[0] = 0x7380166F;
-        IV[1] = 0x4914B2B9;
-        IV[2] = 0x172442D7;
-        IV[3] = 0xDA8A0600;
-        IV[4] = 0xA96F30BC;
-        IV[5] = 0x163138AA;
-        IV[6] = 0xE38DEE4D;
-        IV[7] = 0xB0FB0E4E;
-        for (int j = 0; j < 16; j++) {
-            T[j] = Integer.rotateLeft(0x79CC4519, j);
-        }
-        for (int j = 16; j < 64; j++) {
-            T[j] = Integer.rotateLeft(0x7A879D8A, j % 32);
-        }
-    }
-
-    private static int FF0(int x, int y, int z) {
-        return x ^ y ^ z;
-    }
-
-    private static int FF1(int x, int y, int z) {
-        return (x & y) | (x & z) | (y & z);
-    }
+    static final int T0 = 0x79CC4519;
+    static final int T16 = 0x9D8A7A87;
 
-    private static int GG0(int x, int y, int z) {
-        return x ^ y ^ z;
-    }
-
-    private static int GG1(int x, int y, int z) {
-        return (x & y) | (~x & z);
-    }
-
-    private static int P0(int x) {
+    static int P0(int x) {
         return x ^ Integer.rotateLeft(x, 9) ^ Integer.rotateLeft(x, 17);
 
     }
 
-    private static int P1(int x) {
+    static int P1(int x) {
         return x ^ Integer.rotateLeft(x, 15) ^ Integer.rotateLeft(x, 23);
     }
 
@@ -105,17 +82,25 @@ public class SM3Digest extends MessageDigest {
      * 一个分组 512 bit,即 64 个 byte,即 16 个 int.
      */
     private static final int GROUP_SIZE = 16;
+    /**
+     * 一个分组的字节数
+     */
+    static final int BLOCK_SIZE = GROUP_SIZE * 4;
     /**
      * 存储一个分组
      */
-    private int[] group;
+    private int[] group = new int[GROUP_SIZE];
+    /**
+     * 5.3.2.消息扩展 W0 - W67,每个分组复用
+     */
+    private int[] w = new int[68];
     private int groupOffset;
 
     private static final int BUFF_SIZE = 4;
     /**
      * 尚未转换为 int 的缓存,可以存储 4 个比特,即 32 个 bit
      */
-    private byte[] buff;
+    private byte[] buff = new byte[BUFF_SIZE];
     private int buffOffset;
 
     /**
@@ -123,7 +108,15 @@ public class SM3Digest extends MessageDigest {
      */
     private long len;
 
-    private int[] vi;
+    /**
+     * 中间状态 V(i)
+     */
+    private int v0, v1, v2, v3, v4, v5, v6, v7;
+
+    /**
+     * 导出的中间状态的固定部分: V(i) 的 32 字节与消息长度的 8 字节
+     */
+    private static final int STATE_SIZE = 40;
 
     public SM3Digest() {
         super("MessageDigest.SM3");
@@ -131,74 +124,108 @@ public class SM3Digest extends MessageDigest {
     }
 
     /**
-     * 5.3.3.压缩函数
+     * 5.3.2.消息扩展,由 W0 - W15 计算 W16 - W67
+     *
+     * @param w 长度为 68 的数组,前 16 个字为分组
      */
-    private void CF() {
-        /*
-         * 5.3.2.消息扩展
-         */
-        int[] w = new int[68];
-        // a
-        System.arraycopy(this.group, 0, w, 0, 16);
-        // b
+    static void expand(int[] w) {
         for (int j = 16; j < 68; j++) {
             w[j] = P1(w[j - 16] ^ w[j - 9] ^ Integer.rotateLeft(w[j - 3], 15))
                     ^ Integer.rotateLeft(w[j - 13], 7)
                     ^ w[j - 6];
         }
-        /*
-         * 5.3.3.压缩函数
-         */
-        int a = this.vi[0];
-        int b = this.vi[1];
-        int c = this.vi[2];
-        int d = this.vi[3];
-        int e = this.vi[4];
-        int f = this.vi[5];
-        int g = this.vi[6];
-        int h = this.vi[7];
-        for (int j = 0; j < 16; j++) {
-            int a12 = Integer.rotateLeft(a, 12);
-            int ss1 = Integer.rotateLeft(a12 + e + T[j], 7);
-            int ss2 = ss1 ^ a12;
-            // c
-            int w1j = w[j] ^ w[j + 4];
-            int tt1 = FF0(a, b, c) + d + ss2 + w1j;
-            int tt2 = GG0(e, f, g) + h + ss1 + w[j];
-            d = c;
-            c = Integer.rotateLeft(b, 9);
-            b = a;
-            a = tt1;
-            h = g;
-            g = Integer.rotateLeft(f, 19);
-            f = e;
-            e = P0(tt2);
+    }
+
+    /**
+     * 5.3.3.压缩函数,压缩 group 中的一个分组,不分配任何对象.
+     * <ul>
+     * <li>5.3.2 的消息扩展写入复用的数组 w,W'(j) 不单独存储,在轮中以 W(j) ^ W(j+4) 计算;</li>
+     * <li>每 4 轮展开为一组,每一轮只改写 D, H 并循环左移 B, F,其余寄存器不做移动,改为在下一轮中轮换变量的角色,
+     * 即第 j + 1 轮的 (A, B, C, D, E, F, G, H) 为第 j 轮的 (D, A, B, C, H, E, F, G),每 4 轮恢复原样;</li>
+     * <li>Tj rotateLeft (j mod 32) 每轮循环左移 1 位得到,无需查表;</li>
+     * <li>FF1 以等价的 (X AND Y) OR ((X OR Y) AND Z) 计算,GG1 以 ((Y XOR Z) AND X) XOR Z 计算.</li>
+     * </ul>
+     */
+    private void CF() {
+        // 5.3.2.消息扩展
+        int[] w = this.w;
+        System.arraycopy(this.group, 0, w, 0, GROUP_SIZE);
+        expand(w);
+        int a = this.v0, b = this.v1, c = this.v2, d = this.v3;
+        int e = this.v4, f = this.v5, g = this.v6, h = this.v7;
+        int a12, ss1;
+        // 0 <= j <= 15
+        int t = T0;
+        for (int j = 0; j < 16; j += 4) {
+            a12 = Integer.rotateLeft(a, 12);
+            ss1 = Integer.rotateLeft(a12 + e + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            h = P0((e ^ f ^ g) + h + ss1 + w[j]);
+            d = (a ^ b ^ c) + d + (ss1 ^ a12) + (w[j] ^ w[j + 4]);
+            b = Integer.rotateLeft(b, 9);
+            f = Integer.rotateLeft(f, 19);
+            a12 = Integer.rotateLeft(d, 12);
+            ss1 = Integer.rotateLeft(a12 + h + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            g = P0((h ^ e ^ f) + g + ss1 + w[j + 1]);
+            c = (d ^ a ^ b) + c + (ss1 ^ a12) + (w[j + 1] ^ w[j + 5]);
+            a = Integer.rotateLeft(a, 9);
+            e = Integer.rotateLeft(e, 19);
+            a12 = Integer.rotateLeft(c, 12);
+            ss1 = Integer.rotateLeft(a12 + g + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            f = P0((g ^ h ^ e) + f + ss1 + w[j + 2]);
+            b = (c ^ d ^ a) + b + (ss1 ^ a12) + (w[j + 2] ^ w[j + 6]);
+            d = Integer.rotateLeft(d, 9);
+            h = Integer.rotateLeft(h, 19);
+            a12 = Integer.rotateLeft(b, 12);
+            ss1 = Integer.rotateLeft(a12 + f + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            e = P0((f ^ g ^ h) + e + ss1 + w[j + 3]);
+            a = (b ^ c ^ d) + a + (ss1 ^ a12) + (w[j + 3] ^ w[j + 7]);
+            c = Integer.rotateLeft(c, 9);
+            g = Integer.rotateLeft(g, 19);
         }
-        for (int j = 16; j < 64; j++) {
-            int a12 = Integer.rotateLeft(a, 12);
-            int ss1 = Integer.rotateLeft(a12 + e + T[j], 7);
-            int ss2 = ss1 ^ a12;
-            // c
-            int w1j = w[j] ^ w[j + 4];
-            int tt1 = FF1(a, b, c) + d + ss2 + w1j;
-            int tt2 = GG1(e, f, g) + h + ss1 + w[j];
-            d = c;
-            c = Integer.rotateLeft(b, 9);
-            b = a;
-            a = tt1;
-            h = g;
-            g = Integer.rotateLeft(f, 19);
-            f = e;
-            e = P0(tt2);
+        // 16 <= j <= 63
+        t = T16;
+        for (int j = 16; j < 64; j += 4) {
+            a12 = Integer.rotateLeft(a, 12);
+            ss1 = Integer.rotateLeft(a12 + e + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            h = P0((((f ^ g) & e) ^ g) + h + ss1 + w[j]);
+            d = ((a & b) | ((a | b) & c)) + d + (ss1 ^ a12) + (w[j] ^ w[j + 4]);
+            b = Integer.rotateLeft(b, 9);
+            f = Integer.rotateLeft(f, 19);
+            a12 = Integer.rotateLeft(d, 12);
+            ss1 = Integer.rotateLeft(a12 + h + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            g = P0((((e ^ f) & h) ^ f) + g + ss1 + w[j + 1]);
+            c = ((d & a) | ((d | a) & b)) + c + (ss1 ^ a12) + (w[j + 1] ^ w[j + 5]);
+            a = Integer.rotateLeft(a, 9);
+            e = Integer.rotateLeft(e, 19);
+            a12 = Integer.rotateLeft(c, 12);
+            ss1 = Integer.rotateLeft(a12 + g + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            f = P0((((h ^ e) & g) ^ e) + f + ss1 + w[j + 2]);
+            b = ((c & d) | ((c | d) & a)) + b + (ss1 ^ a12) + (w[j + 2] ^ w[j + 6]);
+            d = Integer.rotateLeft(d, 9);
+            h = Integer.rotateLeft(h, 19);
+            a12 = Integer.rotateLeft(b, 12);
+            ss1 = Integer.rotateLeft(a12 + f + t, 7);
+            t = Integer.rotateLeft(t, 1);
+            e = P0((((g ^ h) & f) ^ h) + e + ss1 + w[j + 3]);
+            a = ((b & c) | ((b | c) & d)) + a + (ss1 ^ a12) + (w[j + 3] ^ w[j + 7]);
+            c = Integer.rotateLeft(c, 9);
+            g = Integer.rotateLeft(g, 19);
         }
-        this.vi[0] ^= a;
-        this.vi[1] ^= b;
-        this.vi[2] ^= c;
-        this.vi[3] ^= d;
-        this.vi[4] ^= e;
-        this.vi[5] ^= f;
-        this.vi[6] ^= g;
-        this.vi[7] ^= h;
+        this.v0 ^= a;
+        this.v1 ^= b;
+        this.v2 ^= c;
+        this.v3 ^= d;
+        this.v4 ^= e;
+        this.v5 ^= f;
+        this.v6 ^= g;
+        this.v7 ^= h;
     }
 
     /**
@@ -210,6 +237,14 @@ public class SM3Digest extends MessageDigest {
         while (this.buffOffset != 0) {
             this.write((byte) 0);
         }
+        // 剩余空间不足以存放长度时,先填充并压缩当前分组
+        if (this.groupOffset > GROUP_SIZE - 2) {
+            while (this.groupOffset != GROUP_SIZE) {
+                this.group[this.groupOffset++] = 0;
+            }
+            CF();
+            this.groupOffset = 0;
+        }
         while (this.groupOffset != GROUP_SIZE - 2) {
             this.group[this.groupOffset++] = 0;
         }
@@ -239,17 +274,33 @@ public class SM3Digest extends MessageDigest {
         }
     }
 
+    /**
+     * 将一个完整的字存入整形组,要求 4 字节缓冲区为空
+     */
+    private void writeInt(int word) {
+        this.group[this.groupOffset++] = word;
+        if (this.groupOffset == GROUP_SIZE) {
+            CF();
+            this.groupOffset = 0;
+        }
+    }
+
     /**
      * 重置 MessageDigest 以供下一次使用
      */
     @Override
     protected void engineReset() {
-        this.group = new int[GROUP_SIZE];
         this.groupOffset = 0;
-        this.buff = new byte[BUFF_SIZE];
         this.buffOffset = 0;
         this.len = 0;
-        this.vi = Arrays.copyOf(IV, IV.length);
+        this.v0 = IV0;
+        this.v1 = IV1;
+        this.v2 = IV2;
+        this.v3 = IV3;
+        this.v4 = IV4;
+        this.v5 = IV5;
+        this.v6 = IV6;
+        this.v7 = IV7;
     }
 
     /**
@@ -272,13 +323,79 @@ public class SM3Digest extends MessageDigest {
      */
     @Override
     protected void engineUpdate(byte[] input, int offset, int len) {
-        len = Math.max(0, len);
+        if (len <= 0) {
+            return;
+        }
         this.len += len;
-        for (int i = offset; i < len; i++) {
-            this.write(input[i]);
+        int end = offset + len;
+        // 补齐缓存中不完整的字
+        while (offset < end && this.buffOffset != 0) {
+            this.write(input[offset++]);
+        }
+        // 按整数补齐不完整的分组
+        while (end - offset >= 4 && this.groupOffset != 0) {
+            this.writeInt(PackUtil.bigEndianToInt(input, offset));
+            offset += 4;
+        }
+        // 完整的分组直接从输入中读取并压缩,此时 groupOffset 为 0 或剩余不足 4 字节
+        while (end - offset >= BLOCK_SIZE) {
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                this.group[i] = PackUtil.bigEndianToInt(input, offset);
+                offset += 4;
+            }
+            CF();
+        }
+        // 剩余不足一个分组的部分,先按整数再按字节
+        while (end - offset >= 4) {
+            this.writeInt(PackUtil.bigEndianToInt(input, offset));
+            offset += 4;
+        }
+        while (offset < end) {
+            this.write(input[offset++]);
         }
     }
 
+    /**
+     * 使用 ByteBuffer 中剩余的字节更新 MessageDigest,完成后 position 等于 limit.
+     * 堆内的缓冲区直接使用其底层数组; 直接缓冲区按整数读取完整的分组,不复制到临时数组.
+     *
+     * @param input 用于更新的缓冲区
+     */
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        int remaining = input.remaining();
+        if (remaining <= 0) {
+            return;
+        }
+        int position = input.position();
+        int limit = input.limit();
+        if (input.hasArray()) {
+            this.engineUpdate(input.array(), input.arrayOffset() + position, remaining);
+            input.position(limit);
+            return;
+        }
+        this.len += remaining;
+        // 补齐缓存中不完整的分组
+        while (position < limit && (this.buffOffset != 0 || this.groupOffset != 0)) {
+            this.write(input.get(position++));
+        }
+        // 完整的分组按整数读取,getInt 使用缓冲区自身的字节序
+        boolean bigEndian = input.order() == ByteOrder.BIG_ENDIAN;
+        while (limit - position >= BLOCK_SIZE) {
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                int word = input.getInt(position);
+                this.group[i] = bigEndian ? word : Integer.reverseBytes(word);
+                position += 4;
+            }
+            CF();
+        }
+        // 剩余不足一个分组的部分
+        while (position < limit) {
+            this.write(input.get(position++));
+        }
+        input.position(limit);
+    }
+
     /**
      * 通过执行填充等最终操作来完成哈希计算.并完成重置
      *
@@ -286,15 +403,141 @@ public class SM3Digest extends MessageDigest {
      */
     @Override
     protected byte[] engineDigest() {
-        fill();
-        CF();
         byte[] rst = new byte[32];
-        int offset = 0;
-        for (int v : vi) {
-            PackUtil.intToBigEndian(v, rst, offset);
-            offset += 4;
+        this.doFinal(rst, 0);
+        return rst;
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 32;
+    }
+
+    /**
+     * 将哈希值直接写入给定的数组,不分配新的数组
+     *
+     * @param buf    输出的数组
+     * @param offset 输出的偏移量
+     * @param len    输出的数组中可用的字节数
+     * @return 写入的字节数,即 32
+     */
+    @Override
+    protected int engineDigest(byte[] buf, int offset, int len) throws DigestException {
+        if (len < 32) {
+            throw new DigestException("partial digests not returned");
         }
+        if (buf.length - offset < 32) {
+            throw new DigestException("insufficient space in the output buffer to store the digest");
+        }
+        this.doFinal(buf, offset);
+        return 32;
+    }
+
+    private void doFinal(byte[] out, int offset) {
+        fill();
+        CF();
+        PackUtil.intToBigEndian(this.v0, out, offset);
+        PackUtil.intToBigEndian(this.v1, out, offset + 4);
+        PackUtil.intToBigEndian(this.v2, out, offset + 8);
+        PackUtil.intToBigEndian(this.v3, out, offset + 12);
+        PackUtil.intToBigEndian(this.v4, out, offset + 16);
+        PackUtil.intToBigEndian(this.v5, out, offset + 20);
+        PackUtil.intToBigEndian(this.v6, out, offset + 24);
+        PackUtil.intToBigEndian(this.v7, out, offset + 28);
         reset();
-        return rst;
+    }
+
+    /**
+     * 复制当前的状态,复制后的对象与原对象互不影响.
+     * 常用于先吸收公共的前缀,再从该状态出发分别计算不同消息的杂凑值.
+     */
+    @Override
+    public SM3Digest clone() {
+        SM3Digest copy;
+        try {
+            copy = (SM3Digest) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // 已实现 Cloneable,不会发生
+            throw new IllegalStateException(e);
+        }
+        copy.group = this.group.clone();
+        copy.buff = this.buff.clone();
+        copy.w = new int[this.w.length];
+        return copy;
+    }
+
+    /**
+     * 将当前状态设置为与 other 相同,不分配任何对象
+     */
+    void copyFrom(SM3Digest other) {
+        System.arraycopy(other.group, 0, this.group, 0, GROUP_SIZE);
+        System.arraycopy(other.buff, 0, this.buff, 0, BUFF_SIZE);
+        this.groupOffset = other.groupOffset;
+        this.buffOffset = other.buffOffset;
+        this.len = other.len;
+        this.v0 = other.v0;
+        this.v1 = other.v1;
+        this.v2 = other.v2;
+        this.v3 = other.v3;
+        this.v4 = other.v4;
+        this.v5 = other.v5;
+        this.v6 = other.v6;
+        this.v7 = other.v7;
+    }
+
+    /**
+     * 导出当前的中间状态,可通过 {@link #setState(byte[])} 恢复,也可持久化后在其他实例中恢复.
+     * <p>
+     * 格式为 V(i) 的 8 个字(大端序) ∥ 已输入的字节数(8 字节,大端序) ∥ 尚未压缩的不足一个分组的字节.
+     *
+     * @return 中间状态,长度为 40 加上已输入字节数模 64
+     */
+    public byte[] getState() {
+        int pending = this.groupOffset * 4 + this.buffOffset;
+        byte[] state = new byte[STATE_SIZE + pending];
+        PackUtil.intToBigEndian(this.v0, state, 0);
+        PackUtil.intToBigEndian(this.v1, state, 4);
+        PackUtil.intToBigEndian(this.v2, state, 8);
+        PackUtil.intToBigEndian(this.v3, state, 12);
+        PackUtil.intToBigEndian(this.v4, state, 16);
+        PackUtil.intToBigEndian(this.v5, state, 20);
+        PackUtil.intToBigEndian(this.v6, state, 24);
+        PackUtil.intToBigEndian(this.v7, state, 28);
+        PackUtil.intToBigEndian((int) (this.len >>> 32), state, 32);
+        PackUtil.intToBigEndian((int) this.len, state, 36);
+        for (int i = 0; i < this.groupOffset; i++) {
+            PackUtil.intToBigEndian(this.group[i], state, STATE_SIZE + i * 4);
+        }
+        System.arraycopy(this.buff, 0, state, STATE_SIZE + this.groupOffset * 4, this.buffOffset);
+        return state;
+    }
+
+    /**
+     * 恢复由 {@link #getState()} 导出的中间状态
+     *
+     * @param state 中间状态
+     */
+    public void setState(byte[] state) {
+        if (state.length < STATE_SIZE) {
+            throw new IllegalArgumentException("illegal SM3 state length: " + state.length);
+        }
+        long len = ((long) PackUtil.bigEndianToInt(state, 32) << 32) | (PackUtil.bigEndianToInt(state, 36) & 0xFFFFFFFFL);
+        if (len < 0 || state.length != STATE_SIZE + (int) (len % BLOCK_SIZE)) {
+            throw new IllegalArgumentException("illegal SM3 state length: " + state.length);
+        }
+        this.engineReset();
+        this.v0 = PackUtil.bigEndianToInt(state, 0);
+        this.v1 = PackUtil.bigEndianToInt(state, 4);
+        this.v2 = PackUtil.bigEndianToInt(state, 8);
+        this.v3 = PackUtil.bigEndianToInt(state, 12);
+        this.v4 = PackUtil.bigEndianToInt(state, 16);
+        this.v5 = PackUtil.bigEndianToInt(state, 20);
+        this.v6 = PackUtil.bigEndianToInt(state, 24);
+        this.v7 = PackUtil.bigEndianToInt(state, 28);
+        // 不足一个分组,不会触发压缩
+        for (int i = STATE_SIZE; i < state.length; i++) {
+            this.write(state[i]);
+        }
+        this.len = len;
     }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.digests;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 计算文件的 SM3 杂凑值.
+ * <p>
+ * 较大的文件以 {@link FileChannel#map} 分段映射到内存后直接输入 SM3,不经过堆内的缓冲区;
+ * 较小的文件映射的开销大于读取,使用可复用的直接缓冲区读取.
+ * 批量计算时使用固定数量的线程,每个线程依次领取下一个文件,同时打开的文件数不超过线程数.
+ */
+public final class SM3Files {
+
+    /**
+     * 小于该大小的文件直接读取,不做映射
+     */
+    private static final long MAP_THRESHOLD = 1 << 20;
+    /**
+     * 每次映射的最大字节数
+     */
+    private static final long MAP_SIZE = 64L << 20;
+    /**
+     * 读取小文件的直接缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private SM3Files() {
+    }
+
+    /**
+     * 计算单个文件的杂凑值
+     *
+     * @param path 文件路径
+     * @return 32 byte[] 杂凑值
+     * @throws IOException 读取文件失败
+     */
+    public static byte[] hash(Path path) throws IOException {
+        SM3Digest sm3 = new SM3Digest();
+        update(path, sm3, null);
+        return sm3.digest();
+    }
+
+    /**
+     * 使用与处理器数量相同的线程数批量计算文件的杂凑值
+     *
+     * @see #hashAll(Collection, int)
+     */
+    public static FileHashResult hashAll(Collection<Path> paths) {
+        return hashAll(paths, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 批量计算文件的杂凑值,单个文件读取失败不影响其他文件
+     *
+     * @param paths       文件路径
+     * @param parallelism 最大的并行线程数
+     * @return 按输入顺序排列的各文件的杂凑值或异常,以及吞吐量
+     */
+    public static FileHashResult hashAll(Collection<Path> paths, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        List<Path> list = new ArrayList<>(paths);
+        int size = list.size();
+        byte[][] digests = new byte[size][];
+        Exception[] failures = new Exception[size];
+        long[] bytes = new long[size];
+        int threads = Math.min(parallelism, size);
+        long start = System.nanoTime();
+        if (threads > 0) {
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "sm3-files");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(CompletableFuture.runAsync(() -> {
+                        SM3Digest sm3 = new SM3Digest();
+                        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                        for (int i = next.getAndIncrement(); i < size; i = next.getAndIncrement()) {
+                            try {
+                                bytes[i] = update(list.get(i), sm3, buffer);
+                                digests[i] = sm3.digest();
+                            } catch (IOException | RuntimeException e) {
+                                // 包括无法访问文件时的 SecurityException 等
+                                sm3.reset();
+                                failures[i] = e;
+                            }
+                        }
+                    }, executor));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } finally {
+                executor.shutdown();
+            }
+        }
+        return new FileHashResult(list, digests, failures, bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * 将文件的内容输入 sm3
+     *
+     * @param buffer 读取小文件使用的直接缓冲区,为 null 时按需分配
+     * @return 输入的字节数
+     */
+    private static long update(Path path, SM3Digest sm3, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_SIZE) {
+                    long len = Math.min(MAP_SIZE, size - position);
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, len);
+                    sm3.update(mapped);
+                }
+                return size;
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+            long total = 0;
+            buffer.clear();
+            for (int n = channel.read(buffer); n >= 0; n = channel.read(buffer)) {
+                total += n;
+                buffer.flip();
+                sm3.update(buffer);
+                buffer.clear();
+            }
+            return total;
+        }
+    }
+}
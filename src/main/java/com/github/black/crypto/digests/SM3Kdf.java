@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.digests;
+
+import com.github.black.crypto.util.PackUtil;
+
+import java.security.DigestException;
+
+/**
+ * GM/T 0003.4-2012 5.4.3 以 SM3 为杂凑函数的秘钥派生函数.
+ * <pre>{@code
+ * KDF(Z, klen) = Ha(1) ∥ Ha(2) ∥ ... ,Ha(ct) = SM3(Z ∥ ct),ct 为 32 位大端序计数器,从 1 开始
+ * }</pre>
+ * 构造时吸收一次 Z 并保存中间状态,每个计数器从该状态复制出来,只需输入 4 字节的计数器.
+ * 例如 Z = x2 ∥ y2 为 64 字节时,每 32 字节输出只需一次压缩,而不是两次.
+ * <p>
+ * 每个实例只对应一个 Z,非线程安全.
+ */
+public final class SM3Kdf {
+
+    private static final int HASH_SIZE = 32;
+
+    /**
+     * 吸收 Z 之后的状态
+     */
+    private final SM3Digest prefix = new SM3Digest();
+    private final SM3Digest sm3 = new SM3Digest();
+    private final byte[] counter = new byte[4];
+    private final byte[] block = new byte[HASH_SIZE];
+
+    /**
+     * @param zs 依次连接构成比特串 Z
+     */
+    public SM3Kdf(byte[]... zs) {
+        for (byte[] z : zs) {
+            this.prefix.update(z);
+        }
+    }
+
+    /**
+     * @param k 要获得的密钥数据的长度
+     * @return 密钥数据
+     */
+    public byte[] generate(int k) {
+        byte[] rst = new byte[k];
+        this.generate(rst, 0, k);
+        return rst;
+    }
+
+    /**
+     * 将 k 字节的密钥数据写入 out
+     *
+     * @param out    输出的数组
+     * @param offset 输出的偏移量
+     * @param k      要获得的密钥数据的长度
+     */
+    public void generate(byte[] out, int offset, int k) {
+        int ct = 0;
+        for (int pos = 0; pos < k; pos += HASH_SIZE) {
+            int len = Math.min(HASH_SIZE, k - pos);
+            if (len == HASH_SIZE) {
+                this.hash(++ct, out, offset + pos);
+            } else {
+                this.hash(++ct, this.block, 0);
+                System.arraycopy(this.block, 0, out, offset + pos, len);
+            }
+        }
+    }
+
+    /**
+     * out = in XOR KDF(Z, len),in 与 out 可以是同一个数组以便原地计算
+     *
+     * @param in        输入的数组
+     * @param inOffset  输入的偏移量
+     * @param out       输出的数组
+     * @param outOffset 输出的偏移量
+     * @param len       字节数,也是密钥数据的长度
+     */
+    public void xor(byte[] in, int inOffset, byte[] out, int outOffset, int len) {
+        byte[] t = this.block;
+        int ct = 0;
+        for (int pos = 0; pos < len; pos += HASH_SIZE) {
+            this.hash(++ct, t, 0);
+            int n = Math.min(HASH_SIZE, len - pos);
+            for (int i = 0; i < n; i++) {
+                out[outOffset + pos + i] = (byte) (in[inOffset + pos + i] ^ t[i]);
+            }
+        }
+    }
+
+    /**
+     * Ha(ct) = SM3(Z ∥ ct),写入 out
+     */
+    private void hash(int ct, byte[] out, int offset) {
+        this.sm3.copyFrom(this.prefix);
+        PackUtil.intToBigEndian(ct, this.counter, 0);
+        this.sm3.update(this.counter);
+        try {
+            this.sm3.digest(out, offset, HASH_SIZE);
+        } catch (DigestException e) {
+            // 输出空间总是足够的
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.digests;
+
+import com.github.black.crypto.util.PackUtil;
+
+import java.util.Arrays;
+
+/**
+ * 多通道 SM3,同时计算多个互相独立的消息的杂凑值.
+ * <p>
+ * SM3 的 64 轮之间是串行依赖的,单条消息难以填满处理器的执行单元.
+ * 此处以 2 个通道同步推进,每次压缩各通道的一个分组,各通道的轮函数在同一循环中交错排列,
+ * 处理器可以乱序地同时执行不同通道的运算.
+ * 某个通道的消息处理完毕后,立即在该通道开始下一条消息,因此消息长度不同时各通道也能保持满载.
+ * <p>
+ * 适合大量短消息(数百字节以内)的场景,长消息应直接使用 {@link SM3Digest}.
+ */
+public final class SM3MultiLane {
+
+    /**
+     * 通道数,须与 {@link #compress} 展开的通道数一致.
+     * 每个通道的 8 个寄存器均保存在局部变量中,更多的通道在 x86-64 上会因寄存器不足而溢出到栈上,反而变慢
+     */
+    private static final int LANES = 2;
+
+    private SM3MultiLane() {
+    }
+
+    /**
+     * 分别计算每条消息的杂凑值
+     *
+     * @param messages 待杂凑的消息
+     * @return 与 messages 一一对应的 32 byte 杂凑值
+     */
+    public static byte[][] hashAll(byte[][] messages) {
+        byte[][] digests = new byte[messages.length][];
+        if (messages.length < LANES) {
+            SM3Digest sm3 = new SM3Digest();
+            for (int i = 0; i < messages.length; i++) {
+                digests[i] = sm3.digest(messages[i]);
+            }
+            return digests;
+        }
+        int[] v = new int[LANES * 8];
+        int[][] w = new int[LANES][68];
+        Lane[] lanes = new Lane[LANES];
+        for (int l = 0; l < LANES; l++) {
+            lanes[l] = new Lane();
+        }
+        int next = 0;
+        while (true) {
+            int active = 0;
+            for (int l = 0; l < LANES; l++) {
+                Lane lane = lanes[l];
+                if (lane.index >= 0 && lane.block == lane.blocks) {
+                    digests[lane.index] = output(v, l);
+                    lane.index = -1;
+                }
+                if (lane.index < 0 && next < messages.length) {
+                    lane.start(next, messages[next]);
+                    init(v, l);
+                    next++;
+                }
+                // 空闲的通道仍参与压缩,其结果被丢弃
+                if (lane.index >= 0) {
+                    lane.load(w[l]);
+                    SM3Digest.expand(w[l]);
+                    active++;
+                }
+            }
+            if (active == 0) {
+                return digests;
+            }
+            compress(v, w[0], w[1]);
+        }
+    }
+
+    private static void init(int[] v, int lane) {
+        int i = lane * 8;
+        v[i] = SM3Digest.IV0;
+        v[i + 1] = SM3Digest.IV1;
+        v[i + 2] = SM3Digest.IV2;
+        v[i + 3] = SM3Digest.IV3;
+        v[i + 4] = SM3Digest.IV4;
+        v[i + 5] = SM3Digest.IV5;
+        v[i + 6] = SM3Digest.IV6;
+        v[i + 7] = SM3Digest.IV7;
+    }
+
+    private static byte[] output(int[] v, int lane) {
+        byte[] rst = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            PackUtil.intToBigEndian(v[lane * 8 + i], rst, i * 4);
+        }
+        return rst;
+    }
+
+    /**
+     * 对 2 个通道各压缩一个分组,各通道的轮函数交错排列,彼此之间没有数据依赖.
+     *
+     * @param v 各通道的中间状态,第 l 个通道为 v[8 * l] - v[8 * l + 7]
+     */
+    private static void compress(int[] v, int[] w0, int[] w1) {
+        int a0 = v[0], b0 = v[1], c0 = v[2], d0 = v[3];
+        int e0 = v[4], f0 = v[5], g0 = v[6], h0 = v[7];
+        int a1 = v[8], b1 = v[9], c1 = v[10], d1 = v[11];
+        int e1 = v[12], f1 = v[13], g1 = v[14], h1 = v[15];
+        int a12, ss1, tt1, tt2;
+        // 0 <= j <= 15
+        int t = SM3Digest.T0;
+        for (int j = 0; j < 16; j++) {
+            a12 = Integer.rotateLeft(a0, 12);
+            ss1 = Integer.rotateLeft(a12 + e0 + t, 7);
+            tt1 = (a0 ^ b0 ^ c0) + d0 + (ss1 ^ a12) + (w0[j] ^ w0[j + 4]);
+            tt2 = (e0 ^ f0 ^ g0) + h0 + ss1 + w0[j];
+            d0 = c0;
+            c0 = Integer.rotateLeft(b0, 9);
+            b0 = a0;
+            a0 = tt1;
+            h0 = g0;
+            g0 = Integer.rotateLeft(f0, 19);
+            f0 = e0;
+            e0 = SM3Digest.P0(tt2);
+            a12 = Integer.rotateLeft(a1, 12);
+            ss1 = Integer.rotateLeft(a12 + e1 + t, 7);
+            tt1 = (a1 ^ b1 ^ c1) + d1 + (ss1 ^ a12) + (w1[j] ^ w1[j + 4]);
+            tt2 = (e1 ^ f1 ^ g1) + h1 + ss1 + w1[j];
+            d1 = c1;
+            c1 = Integer.rotateLeft(b1, 9);
+            b1 = a1;
+            a1 = tt1;
+            h1 = g1;
+            g1 = Integer.rotateLeft(f1, 19);
+            f1 = e1;
+            e1 = SM3Digest.P0(tt2);
+            t = Integer.rotateLeft(t, 1);
+        }
+        // 16 <= j <= 63
+        t = SM3Digest.T16;
+        for (int j = 16; j < 64; j++) {
+            a12 = Integer.rotateLeft(a0, 12);
+            ss1 = Integer.rotateLeft(a12 + e0 + t, 7);
+            tt1 = ((a0 & b0) | ((a0 | b0) & c0)) + d0 + (ss1 ^ a12) + (w0[j] ^ w0[j + 4]);
+            tt2 = (((f0 ^ g0) & e0) ^ g0) + h0 + ss1 + w0[j];
+            d0 = c0;
+            c0 = Integer.rotateLeft(b0, 9);
+            b0 = a0;
+            a0 = tt1;
+            h0 = g0;
+            g0 = Integer.rotateLeft(f0, 19);
+            f0 = e0;
+            e0 = SM3Digest.P0(tt2);
+            a12 = Integer.rotateLeft(a1, 12);
+            ss1 = Integer.rotateLeft(a12 + e1 + t, 7);
+            tt1 = ((a1 & b1) | ((a1 | b1) & c1)) + d1 + (ss1 ^ a12) + (w1[j] ^ w1[j + 4]);
+            tt2 = (((f1 ^ g1) & e1) ^ g1) + h1 + ss1 + w1[j];
+            d1 = c1;
+            c1 = Integer.rotateLeft(b1, 9);
+            b1 = a1;
+            a1 = tt1;
+            h1 = g1;
+            g1 = Integer.rotateLeft(f1, 19);
+            f1 = e1;
+            e1 = SM3Digest.P0(tt2);
+            t = Integer.rotateLeft(t, 1);
+        }
+        v[0] ^= a0;
+        v[1] ^= b0;
+        v[2] ^= c0;
+        v[3] ^= d0;
+        v[4] ^= e0;
+        v[5] ^= f0;
+        v[6] ^= g0;
+        v[7] ^= h0;
+        v[8] ^= a1;
+        v[9] ^= b1;
+        v[10] ^= c1;
+        v[11] ^= d1;
+        v[12] ^= e1;
+        v[13] ^= f1;
+        v[14] ^= g1;
+        v[15] ^= h1;
+    }
+
+    /**
+     * 一个通道上正在处理的消息
+     */
+    private static final class Lane {
+
+        /**
+         * 消息的下标,-1 表示空闲
+         */
+        int index = -1;
+        byte[] message;
+        /**
+         * 消息中完整的分组数
+         */
+        int full;
+        /**
+         * 下一个待压缩的分组与填充后的总分组数
+         */
+        int block, blocks;
+        /**
+         * 5.2.填充后的最后一个或两个分组
+         */
+        final byte[] tail = new byte[SM3Digest.BLOCK_SIZE * 2];
+
+        void start(int index, byte[] message) {
+            int rem = message.length % SM3Digest.BLOCK_SIZE;
+            int tailSize = rem + 9 <= SM3Digest.BLOCK_SIZE ? SM3Digest.BLOCK_SIZE : SM3Digest.BLOCK_SIZE * 2;
+            this.index = index;
+            this.message = message;
+            this.full = message.length / SM3Digest.BLOCK_SIZE;
+            this.block = 0;
+            this.blocks = this.full + tailSize / SM3Digest.BLOCK_SIZE;
+            Arrays.fill(this.tail, (byte) 0);
+            System.arraycopy(message, message.length - rem, this.tail, 0, rem);
+            this.tail[rem] = (byte) 0x80;
+            long bits = (long) message.length * 8;
+            PackUtil.intToBigEndian((int) (bits >>> 32), this.tail, tailSize - 8);
+            PackUtil.intToBigEndian((int) bits, this.tail, tailSize - 4);
+        }
+
+        /**
+         * 将下一个分组读入 w 的前 16 个字
+         */
+        void load(int[] w) {
+            byte[] src;
+            int offset;
+            if (this.block < this.full) {
+                src = this.message;
+                offset = this.block * SM3Digest.BLOCK_SIZE;
+            } else {
+                src = this.tail;
+                offset = (this.block - this.full) * SM3Digest.BLOCK_SIZE;
+            }
+            for (int i = 0; i < 16; i++) {
+                w[i] = PackUtil.bigEndianToInt(src, offset + i * 4);
+            }
+            this.block++;
+        }
+    }
+}
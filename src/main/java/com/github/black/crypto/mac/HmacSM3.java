@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.mac;
+
+import com.github.black.crypto.digests.SM3Digest;
+
+import javax.crypto.MacSpi;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+/**
+ * RFC 2104 HMAC,以 SM3 为杂凑函数.
+ * <pre>{@code
+ * HMAC(K, m) = SM3((K' XOR opad) || SM3((K' XOR ipad) || m))
+ * K' 为 K 右侧补 0 至 64 字节,K 超过 64 字节时先取 SM3(K)
+ * }</pre>
+ * (K' XOR ipad) 与 (K' XOR opad) 恰好各为一个分组,初始化时压缩一次并保存两者的中间状态,
+ * 此后每次计算从中间状态出发,短消息只需内外各一次压缩. 不保存秘钥本身,每次初始化都重新计算中间状态.
+ * <p>
+ * 通过 {@link javax.crypto.Mac#getInstance(String, java.security.Provider)} 以 HmacSM3 获取.
+ */
+public final class HmacSM3 extends MacSpi implements Cloneable {
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int MAC_SIZE = 32;
+    private static final byte IPAD = 0x36;
+    private static final byte OPAD = 0x5C;
+
+    private SM3Digest inner = new SM3Digest();
+    private SM3Digest outer = new SM3Digest();
+    /**
+     * 吸收 (K' XOR ipad) 与 (K' XOR opad) 后的中间状态
+     */
+    private byte[] innerState;
+    private byte[] outerState;
+    private byte[] innerHash = new byte[MAC_SIZE];
+
+    @Override
+    protected int engineGetMacLength() {
+        return MAC_SIZE;
+    }
+
+    @Override
+    protected void engineInit(Key key, AlgorithmParameterSpec params)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("HmacSM3 does not use parameters");
+        }
+        if (key == null) {
+            throw new InvalidKeyException("missing secret key");
+        }
+        byte[] encoded = key.getEncoded();
+        if (encoded == null) {
+            throw new InvalidKeyException("secret key has no encoding");
+        }
+        this.setKey(encoded);
+        Arrays.fill(encoded, (byte) 0);
+        this.engineReset();
+    }
+
+    private void setKey(byte[] encoded) {
+        byte[] block = new byte[BLOCK_SIZE];
+        if (encoded.length > BLOCK_SIZE) {
+            // 重新初始化时 inner 仍保留上一个秘钥的状态
+            this.inner.reset();
+            byte[] hash = this.inner.digest(encoded);
+            System.arraycopy(hash, 0, block, 0, hash.length);
+        } else {
+            System.arraycopy(encoded, 0, block, 0, encoded.length);
+        }
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] ^= IPAD;
+        }
+        this.inner.reset();
+        this.inner.update(block);
+        this.innerState = this.inner.getState();
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] ^= IPAD ^ OPAD;
+        }
+        this.outer.reset();
+        this.outer.update(block);
+        this.outerState = this.outer.getState();
+        Arrays.fill(block, (byte) 0);
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        this.inner.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        this.inner.update(input, offset, len);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        this.inner.update(input);
+    }
+
+    @Override
+    protected byte[] engineDoFinal() {
+        byte[] hash = this.innerHash;
+        try {
+            this.inner.digest(hash, 0, MAC_SIZE);
+        } catch (DigestException e) {
+            // 输出空间总是足够的
+            throw new IllegalStateException(e);
+        }
+        this.outer.setState(this.outerState);
+        this.outer.update(hash);
+        byte[] mac = this.outer.digest();
+        this.inner.setState(this.innerState);
+        return mac;
+    }
+
+    @Override
+    protected void engineReset() {
+        if (this.innerState != null) {
+            this.inner.setState(this.innerState);
+        }
+    }
+
+    @Override
+    public HmacSM3 clone() throws CloneNotSupportedException {
+        HmacSM3 copy = (HmacSM3) super.clone();
+        copy.inner = this.inner.clone();
+        copy.outer = this.outer.clone();
+        copy.innerHash = new byte[MAC_SIZE];
+        return copy;
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.merkle;
+
+import com.github.black.crypto.digests.SM3Digest;
+import com.github.black.crypto.util.ParallelUtil;
+
+import java.security.DigestException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 以 SM3 为杂凑函数的 Merkle 树,结构与证明格式遵循 RFC 6962 第 2.1 节.
+ * <pre>{@code
+ * 叶子: MTH({d}) = SM3(0x00 || d)
+ * 节点: MTH(D[n]) = SM3(0x01 || MTH(D[0:k]) || MTH(D[k:n])),k 为小于 n 的最大的 2 的幂
+ * 空树: MTH({}) = SM3()
+ * }</pre>
+ * 每一层的节点按顺序连续地存放在一个字节数组中,每个节点占 32 字节,不为节点创建对象.
+ * 只保存完整的子树,即第 i 层只保存前 size / 2 ^ i 个节点,不完整的右侧子树在计算根与证明时临时计算.
+ * <p>
+ * 追加操作非线程安全,读操作可在没有并发追加时由多个线程同时执行.
+ * 叶子数受单个数组的长度限制,最多约 6700 万个.
+ */
+public final class SM3MerkleTree {
+
+    /**
+     * 杂凑值的字节数
+     */
+    public static final int HASH_SIZE = 32;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    /**
+     * 并行计算时每个任务处理的最大节点数
+     */
+    private static final int PARALLEL_CHUNK = 256;
+
+    private static final int MAX_SIZE = Integer.MAX_VALUE / HASH_SIZE;
+
+    /**
+     * 仅用于追加
+     */
+    private final SM3Digest sm3 = new SM3Digest();
+    /**
+     * levels[i] 为第 i 层的节点,第 0 层为叶子
+     */
+    private byte[][] levels = new byte[1][HASH_SIZE * 16];
+    private int size;
+
+    /**
+     * @return 叶子数
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * 追加一个叶子
+     *
+     * @param data 叶子的数据
+     * @return 叶子的序号
+     */
+    public int append(byte[] data) {
+        int index = this.size;
+        this.grow(index + 1);
+        byte[] leaves = this.levels[0];
+        hashLeaf(this.sm3, data, leaves, index * HASH_SIZE);
+        this.size = index + 1;
+        // 右子节点完整时计算父节点,直到某一层出现左子节点
+        for (int level = 0, i = index; (i & 1) == 1; level++, i >>>= 1) {
+            byte[] nodes = this.levels[level];
+            hashNode(this.sm3, nodes, (i - 1) * HASH_SIZE, nodes, i * HASH_SIZE,
+                    this.levels[level + 1], (i >>> 1) * HASH_SIZE);
+        }
+        return index;
+    }
+
+    /**
+     * 使用公共的 ForkJoin 线程池批量追加叶子
+     *
+     * @see #appendAll(List, ForkJoinPool)
+     */
+    public void appendAll(List<byte[]> data) {
+        this.appendAll(data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 批量追加叶子. 先并行计算所有叶子的杂凑值,再自底向上逐层并行计算新增的完整节点
+     *
+     * @param data 叶子的数据
+     * @param pool 执行并行计算的线程池
+     */
+    public void appendAll(List<byte[]> data, ForkJoinPool pool) {
+        int from = this.size;
+        int to = from + data.size();
+        this.grow(to);
+        byte[] leaves = this.levels[0];
+        ParallelUtil.forEachChunk(from, to, PARALLEL_CHUNK, pool, (start, end) -> {
+            SM3Digest sm3 = new SM3Digest();
+            for (int i = start; i < end; i++) {
+                hashLeaf(sm3, data.get(i - from), leaves, i * HASH_SIZE);
+            }
+        });
+        for (int level = 0; (to >>> (level + 1)) > (from >>> (level + 1)); level++) {
+            byte[] children = this.levels[level];
+            byte[] parents = this.levels[level + 1];
+            ParallelUtil.forEachChunk(from >>> (level + 1), to >>> (level + 1), PARALLEL_CHUNK, pool, (start, end) -> {
+                SM3Digest sm3 = new SM3Digest();
+                for (int i = start; i < end; i++) {
+                    hashNode(sm3, children, i * 2 * HASH_SIZE, children, (i * 2 + 1) * HASH_SIZE, parents, i * HASH_SIZE);
+                }
+            });
+        }
+        this.size = to;
+    }
+
+    /**
+     * @return 当前的根
+     */
+    public byte[] root() {
+        return this.root(this.size);
+    }
+
+    /**
+     * @param size 历史上的叶子数
+     * @return 仅包含前 size 个叶子时的根
+     */
+    public byte[] root(int size) {
+        this.checkSize(size);
+        SM3Digest sm3 = new SM3Digest();
+        if (size == 0) {
+            return sm3.digest();
+        }
+        return this.subtree(sm3, 0, size);
+    }
+
+    /**
+     * @param index 叶子的序号
+     * @return 叶子的杂凑值 SM3(0x00 || d)
+     */
+    public byte[] leafHash(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IllegalArgumentException("leaf index out of range: " + index);
+        }
+        return Arrays.copyOfRange(this.levels[0], index * HASH_SIZE, (index + 1) * HASH_SIZE);
+    }
+
+    /**
+     * @see #inclusionProof(int, int)
+     */
+    public byte[][] inclusionProof(int index) {
+        return this.inclusionProof(index, this.size);
+    }
+
+    /**
+     * 生成叶子在前 size 个叶子构成的树中的存在性证明,即 RFC 6962 的 PATH(m, D[n])
+     *
+     * @param index 叶子的序号
+     * @param size  历史上的叶子数
+     * @return 自底向上的兄弟节点的杂凑值
+     */
+    public byte[][] inclusionProof(int index, int size) {
+        this.checkSize(size);
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("leaf index out of range: " + index);
+        }
+        List<byte[]> proof = new ArrayList<>();
+        this.path(new SM3Digest(), index, 0, size, proof);
+        return proof.toArray(new byte[0][]);
+    }
+
+    /**
+     * @see #consistencyProof(int, int)
+     */
+    public byte[][] consistencyProof(int oldSize) {
+        return this.consistencyProof(oldSize, this.size);
+    }
+
+    /**
+     * 生成前 oldSize 个叶子构成的树与前 newSize 个叶子构成的树之间的一致性证明,即 RFC 6962 的 PROOF(m, D[n])
+     *
+     * @param oldSize 旧的叶子数
+     * @param newSize 新的叶子数
+     * @return 一致性证明
+     */
+    public byte[][] consistencyProof(int oldSize, int newSize) {
+        this.checkSize(newSize);
+        if (oldSize < 0 || oldSize > newSize) {
+            throw new IllegalArgumentException("illegal old size: " + oldSize);
+        }
+        List<byte[]> proof = new ArrayList<>();
+        if (oldSize > 0 && oldSize < newSize) {
+            this.subproof(new SM3Digest(), oldSize, 0, newSize, true, proof);
+        }
+        return proof.toArray(new byte[0][]);
+    }
+
+    /**
+     * @param data 叶子的数据
+     * @return 叶子的杂凑值 SM3(0x00 || d)
+     */
+    public static byte[] leafHash(byte[] data) {
+        byte[] hash = new byte[HASH_SIZE];
+        hashLeaf(new SM3Digest(), data, hash, 0);
+        return hash;
+    }
+
+    /**
+     * 按 RFC 9162 第 2.1.3.2 节验证存在性证明.
+     * 杂凑值或证明中的节点不是 {@link #HASH_SIZE} 字节时证明无效
+     *
+     * @param leafHash 叶子的杂凑值
+     * @param index    叶子的序号
+     * @param size     树的叶子数
+     * @param proof    存在性证明
+     * @param root     树的根
+     * @return 证明是否有效
+     */
+    public static boolean verifyInclusion(byte[] leafHash, int index, int size, byte[][] proof, byte[] root) {
+        if (index < 0 || index >= size) {
+            return false;
+        }
+        if (!isHash(leafHash) || !isHash(root) || !isProof(proof)) {
+            return false;
+        }
+        SM3Digest sm3 = new SM3Digest();
+        int fn = index;
+        int sn = size - 1;
+        byte[] r = leafHash.clone();
+        for (byte[] p : proof) {
+            if (sn == 0) {
+                return false;
+            }
+            if ((fn & 1) == 1 || fn == sn) {
+                hashNode(sm3, p, 0, r, 0, r, 0);
+                while ((fn & 1) == 0 && fn != 0) {
+                    fn >>>= 1;
+                    sn >>>= 1;
+                }
+            } else {
+                hashNode(sm3, r, 0, p, 0, r, 0);
+            }
+            fn >>>= 1;
+            sn >>>= 1;
+        }
+        return sn == 0 && Arrays.equals(r, root);
+    }
+
+    /**
+     * 按 RFC 9162 第 2.1.4.2 节验证一致性证明.
+     * 根或证明中的节点不是 {@link #HASH_SIZE} 字节时证明无效
+     *
+     * @param oldSize 旧的叶子数
+     * @param newSize 新的叶子数
+     * @param oldRoot 旧的根
+     * @param newRoot 新的根
+     * @param proof   一致性证明
+     * @return 证明是否有效
+     */
+    public static boolean verifyConsistency(int oldSize, int newSize, byte[] oldRoot, byte[] newRoot, byte[][] proof) {
+        if (oldSize < 0 || oldSize > newSize) {
+            return false;
+        }
+        if (!isHash(oldRoot) || !isHash(newRoot) || !isProof(proof)) {
+            return false;
+        }
+        if (oldSize == 0 || oldSize == newSize) {
+            // 空树与任意树一致,相同大小的树的根必须相同
+            return proof.length == 0 && (oldSize == 0 || Arrays.equals(oldRoot, newRoot));
+        }
+        if (proof.length == 0) {
+            return false;
+        }
+        int start = 0;
+        byte[] first;
+        // 旧树是完整的子树时,它的根就是证明的第一个节点
+        if ((oldSize & (oldSize - 1)) == 0) {
+            first = oldRoot;
+        } else {
+            first = proof[0];
+            start = 1;
+        }
+        SM3Digest sm3 = new SM3Digest();
+        int fn = oldSize - 1;
+        int sn = newSize - 1;
+        while ((fn & 1) == 1) {
+            fn >>>= 1;
+            sn >>>= 1;
+        }
+        byte[] fr = first.clone();
+        byte[] sr = first.clone();
+        for (int i = start; i < proof.length; i++) {
+            byte[] c = proof[i];
+            if (sn == 0) {
+                return false;
+            }
+            if ((fn & 1) == 1 || fn == sn) {
+                hashNode(sm3, c, 0, fr, 0, fr, 0);
+                hashNode(sm3, c, 0, sr, 0, sr, 0);
+                while ((fn & 1) == 0 && fn != 0) {
+                    fn >>>= 1;
+                    sn >>>= 1;
+                }
+            } else {
+                hashNode(sm3, sr, 0, c, 0, sr, 0);
+            }
+            fn >>>= 1;
+            sn >>>= 1;
+        }
+        return sn == 0 && Arrays.equals(fr, oldRoot) && Arrays.equals(sr, newRoot);
+    }
+
+    private static boolean isHash(byte[] hash) {
+        return hash != null && hash.length == HASH_SIZE;
+    }
+
+    private static boolean isProof(byte[][] proof) {
+        if (proof == null) {
+            return false;
+        }
+        for (byte[] p : proof) {
+            if (!isHash(p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * PATH(m, D[lo:hi]),m 为叶子的绝对序号
+     */
+    private void path(SM3Digest sm3, int m, int lo, int hi, List<byte[]> proof) {
+        if (hi - lo == 1) {
+            return;
+        }
+        int k = Integer.highestOneBit(hi - lo - 1);
+        if (m < lo + k) {
+            this.path(sm3, m, lo, lo + k, proof);
+            proof.add(this.subtree(sm3, lo + k, hi));
+        } else {
+            this.path(sm3, m, lo + k, hi, proof);
+            proof.add(this.subtree(sm3, lo, lo + k));
+        }
+    }
+
+    /**
+     * SUBPROOF(m, D[lo:hi], b),m 为旧树的叶子数(相对于 lo)
+     */
+    private void subproof(SM3Digest sm3, int m, int lo, int hi, boolean complete, List<byte[]> proof) {
+        int n = hi - lo;
+        if (m == n) {
+            if (!complete) {
+                proof.add(this.subtree(sm3, lo, hi));
+            }
+            return;
+        }
+        int k = Integer.highestOneBit(n - 1);
+        if (m <= k) {
+            this.subproof(sm3, m, lo, lo + k, complete, proof);
+            proof.add(this.subtree(sm3, lo + k, hi));
+        } else {
+            this.subproof(sm3, m - k, lo + k, hi, false, proof);
+            proof.add(this.subtree(sm3, lo, lo + k));
+        }
+    }
+
+    /**
+     * MTH(D[lo:hi]),完整的子树直接读取已保存的节点
+     */
+    private byte[] subtree(SM3Digest sm3, int lo, int hi) {
+        int n = hi - lo;
+        if ((n & (n - 1)) == 0 && (lo & (n - 1)) == 0) {
+            int level = Integer.numberOfTrailingZeros(n);
+            int offset = (lo >>> level) * HASH_SIZE;
+            return Arrays.copyOfRange(this.levels[level], offset, offset + HASH_SIZE);
+        }
+        int k = Integer.highestOneBit(n - 1);
+        byte[] left = this.subtree(sm3, lo, lo + k);
+        byte[] right = this.subtree(sm3, lo + k, hi);
+        hashNode(sm3, left, 0, right, 0, left, 0);
+        return left;
+    }
+
+    private void checkSize(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException("tree size out of range: " + size);
+        }
+    }
+
+    /**
+     * 保证各层能够容纳 size 个叶子对应的完整节点
+     */
+    private void grow(int size) {
+        if (size > MAX_SIZE || size < 0) {
+            throw new IllegalArgumentException("too many leaves: " + size);
+        }
+        int height = 32 - Integer.numberOfLeadingZeros(size);
+        if (this.levels.length < height) {
+            this.levels = Arrays.copyOf(this.levels, height);
+        }
+        for (int level = 0; level < height; level++) {
+            int required = (size >>> level) * HASH_SIZE;
+            byte[] nodes = this.levels[level];
+            if (nodes == null) {
+                this.levels[level] = new byte[Math.max(required, HASH_SIZE * 16)];
+            } else if (nodes.length < required) {
+                int capacity = (int) Math.min((long) nodes.length * 2, (long) MAX_SIZE * HASH_SIZE);
+                this.levels[level] = Arrays.copyOf(nodes, Math.max(capacity, required));
+            }
+        }
+    }
+
+    private static void hashLeaf(SM3Digest sm3, byte[] data, byte[] out, int offset) {
+        sm3.update(LEAF_PREFIX);
+        sm3.update(data);
+        digest(sm3, out, offset);
+    }
+
+    /**
+     * out = SM3(0x01 || left || right),out 可以与 left 或 right 相同
+     */
+    private static void hashNode(SM3Digest sm3, byte[] left, int leftOffset, byte[] right, int rightOffset,
+                                 byte[] out, int offset) {
+        sm3.update(NODE_PREFIX);
+        sm3.update(left, leftOffset, HASH_SIZE);
+        sm3.update(right, rightOffset, HASH_SIZE);
+        digest(sm3, out, offset);
+    }
+
+    private static void digest(SM3Digest sm3, byte[] out, int offset) {
+        try {
+            sm3.digest(out, offset, HASH_SIZE);
+        } catch (DigestException e) {
+            // 输出空间总是足够的
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -74,7 +74,10 @@ public class ECCSigner {
         BigInteger smi = s.getS().modInverse(n);
         BigInteger u1 = smi.multiply(this.hash(msg)).mod(n);
         BigInteger u2 = smi.multiply(s.getR()).mod(n);
-        ECPoint P = this.ecc.add(this.ecc.multiplyG(u1), this.ecc.multiply(publicKey, u2));
+        ECPoint P = this.ecc.multiplyAdd(u1, this.ecc.getG(), u2, publicKey);
+        if (P.isInfinity()) {
+            return false;
+        }
         return P.getX().mod(n).equals(s.getR());
     }
 }
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.signer;
+
+import com.github.black.crypto.algorithm.SM2;
+import com.github.black.crypto.util.RandomUtil;
+
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 签名随机数 k 及 [k]G 横坐标 x1 的预计算池.
+ * <p>
+ * 签名中最耗时的 A3, A4 两步与消息无关,可以提前完成. 池由一个低优先级的后台线程填充,
+ * 签名时无锁地取出一对 (k, x1),只剩余模 n 的运算.
+ * 为了不在签名高峰时争抢 CPU,后台线程只在距最近一次取用超过静默时间后才补充,
+ * 也可以调用 {@link #refill()} 立即补充至满,例如在预计到来的高峰之前.
+ * <p>
+ * 池创建后需调用 {@link #start()} 启动后台线程. 每对 (k, x1) 只会被取出一次.
+ * 池中的 k 与私钥同等敏感,由创建者负责在使用完毕后调用 {@link #close()} 停止后台线程并清空;
+ * 未关闭的池在不再被引用后,后台线程也会在 1 秒内退出.
+ */
+public class NoncePool implements AutoCloseable {
+
+    /**
+     * 默认的静默时间,毫秒
+     */
+    public static final long DEFAULT_QUIET_MILLIS = 50;
+
+    /**
+     * 池已满时后台线程检查池是否已关闭或不再被引用的间隔
+     */
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final SM2 sm2;
+    private final int capacity;
+    private final int lowWater;
+    private final long quietNanos;
+    private final ConcurrentLinkedQueue<Nonce> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Thread filler;
+    private volatile boolean closed;
+    /**
+     * 是否忽略静默时间补充至满
+     */
+    private volatile boolean refillRequested;
+    /**
+     * 最近一次取用的时间
+     */
+    private volatile long lastPoll;
+
+    /**
+     * 使用默认的静默时间
+     *
+     * @param sm2      SM2 曲线
+     * @param capacity 池的容量
+     */
+    public NoncePool(SM2 sm2, int capacity) {
+        this(sm2, capacity, DEFAULT_QUIET_MILLIS);
+    }
+
+    /**
+     * @param sm2         SM2 曲线
+     * @param capacity    池的容量
+     * @param quietMillis 距最近一次取用超过该时间后才开始补充
+     */
+    public NoncePool(SM2 sm2, int capacity, long quietMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (quietMillis < 0) {
+            throw new IllegalArgumentException("quiet time must not be negative");
+        }
+        this.sm2 = sm2;
+        this.capacity = capacity;
+        this.lowWater = capacity / 2;
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+    }
+
+    /**
+     * 启动后台线程并立即补充至满,重复调用不会启动新的线程
+     *
+     * @return 当前的池
+     */
+    public synchronized NoncePool start() {
+        if (this.closed) {
+            throw new IllegalStateException("nonce pool is closed");
+        }
+        if (this.filler == null) {
+            Thread thread = new Thread(new Filler(this), "sm2-nonce-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            this.filler = thread;
+            this.refillRequested = true;
+            thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * 忽略静默时间,立即补充至满
+     */
+    public void refill() {
+        this.refillRequested = true;
+        LockSupport.unpark(this.filler);
+    }
+
+    /**
+     * 取出一对预计算的 (k, x1)
+     *
+     * @return 池为空、未启动或已关闭时返回 null
+     */
+    Nonce poll() {
+        if (this.closed || this.filler == null) {
+            return null;
+        }
+        this.lastPoll = System.nanoTime();
+        Nonce nonce = this.queue.poll();
+        if (nonce == null) {
+            LockSupport.unpark(this.filler);
+            return null;
+        }
+        // 低于一半时唤醒后台线程,由其等待静默后补充
+        if (this.size.decrementAndGet() <= this.lowWater) {
+            LockSupport.unpark(this.filler);
+        }
+        return nonce;
+    }
+
+    /**
+     * 补充一对 (k, x1)
+     *
+     * @return 下一次补充前应等待的纳秒数,0 表示继续补充,负数表示池已关闭
+     */
+    private long fillOnce() {
+        if (this.closed) {
+            // 关闭时可能正在补充,退出前再清空一次
+            this.queue.clear();
+            this.size.set(0);
+            return -1;
+        }
+        if (this.size.get() >= this.capacity) {
+            this.refillRequested = false;
+            return IDLE_NANOS;
+        }
+        if (!this.refillRequested) {
+            long wait = this.lastPoll + this.quietNanos - System.nanoTime();
+            if (wait > 0) {
+                return wait;
+            }
+        }
+        BigInteger k = RandomUtil.secureRandomBigDecimal(this.sm2.getN());
+        BigInteger x1 = this.sm2.multiplyG(k).getX();
+        this.queue.offer(new Nonce(k, x1));
+        this.size.incrementAndGet();
+        return 0;
+    }
+
+    /**
+     * @return 池中当前的数量
+     */
+    public int size() {
+        return this.closed ? 0 : this.size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public SM2 getSM2() {
+        return sm2;
+    }
+
+    /**
+     * 停止后台线程并清空池,之后 {@link #poll()} 总是返回 null
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.refillRequested = false;
+        LockSupport.unpark(this.filler);
+        this.queue.clear();
+        this.size.set(0);
+    }
+
+    /**
+     * 签名随机数 k 与 [k]G 的横坐标 x1
+     */
+    static final class Nonce {
+
+        final BigInteger k;
+        final BigInteger x1;
+
+        Nonce(BigInteger k, BigInteger x1) {
+            this.k = k;
+            this.x1 = x1;
+        }
+    }
+
+    /**
+     * 后台线程只弱引用池,池不再被引用时线程随之退出,池中的 k 也可以被回收
+     */
+    private static final class Filler implements Runnable {
+
+        private final WeakReference<NoncePool> pool;
+
+        Filler(NoncePool pool) {
+            this.pool = new WeakReference<>(pool);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                NoncePool pool = this.pool.get();
+                if (pool == null) {
+                    return;
+                }
+                long wait = pool.fillOnce();
+                // 等待期间不持有池的强引用
+                pool = null;
+                if (wait < 0) {
+                    return;
+                }
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, Math.min(wait, IDLE_NANOS));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.signer;
+
+import com.github.black.crypto.algorithm.SM2;
+import com.github.black.crypto.algorithm.SM2KeyPair;
+import com.github.black.crypto.digests.SM3Digest;
+
+import java.math.BigInteger;
+
+/**
+ * 预处理的 SM2 签名秘钥,缓存与消息无关的值.
+ * <pre>{@code
+ * s = (1 + d) ^ -1 * (k - r * d) = inv * k - r * dInv mod n,其中 inv = (1 + d) ^ -1,dInv = d * inv
+ * }</pre>
+ * 签名时无需求逆,只需两次模乘. 同时保存吸收 Z 之后的 SM3 状态,计算 e = SM3(Z ∥ M) 时从该状态复制.
+ * <p>
+ * 构建后不可变,可在多个线程间共享.
+ */
+public class PreparedKey {
+
+    private final SM2 sm2;
+    private final SM2KeyPair keyPair;
+    private final BigInteger inv;
+    private final BigInteger dInv;
+    /**
+     * 吸收 Z 之后的状态,只用于复制,不会被修改
+     */
+    private final SM3Digest zState;
+
+    /**
+     * @param sm2     SM2 曲线
+     * @param keyPair 用户秘钥对
+     */
+    public PreparedKey(SM2 sm2, SM2KeyPair keyPair) {
+        BigInteger n = sm2.getN();
+        BigInteger d = keyPair.getPrivateKey();
+        if (d.signum() <= 0 || d.compareTo(n.subtract(BigInteger.ONE)) >= 0) {
+            throw new IllegalArgumentException("private key out of range [1, n - 2]");
+        }
+        this.sm2 = sm2;
+        this.keyPair = keyPair;
+        this.inv = d.add(BigInteger.ONE).modInverse(n);
+        this.dInv = d.multiply(this.inv).mod(n);
+        this.zState = new SM3Digest();
+        this.zState.update(keyPair.getZ());
+    }
+
+    /**
+     * 6.1 A1 A2: e = SM3(Z ∥ M)
+     */
+    BigInteger hash(byte[] msg) {
+        SM3Digest sm3 = this.zState.clone();
+        sm3.update(msg);
+        return new BigInteger(1, sm3.digest());
+    }
+
+    /**
+     * @return (1 + d) ^ -1 mod n
+     */
+    BigInteger getInv() {
+        return inv;
+    }
+
+    /**
+     * @return d * (1 + d) ^ -1 mod n
+     */
+    BigInteger getDInv() {
+        return dInv;
+    }
+
+    public SM2 getSM2() {
+        return sm2;
+    }
+
+    public SM2KeyPair getKeyPair() {
+        return keyPair;
+    }
+}
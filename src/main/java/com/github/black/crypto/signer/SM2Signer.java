@@ -18,21 +18,73 @@ package com.github.black.crypto.signer;
 
 import com.github.black.crypto.GMUtil;
 import com.github.black.crypto.algorithm.ECPoint;
+import com.github.black.crypto.algorithm.PrecomputeCache;
 import com.github.black.crypto.algorithm.SM2;
 import com.github.black.crypto.algorithm.SM2KeyPair;
+import com.github.black.crypto.util.ParallelUtil;
 import com.github.black.crypto.util.RandomUtil;
 
 import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 中文 PDF2 数字签名算法 http://www.gmbz.org.cn/main/viewfile/20180108023346264349.html
  */
 public class SM2Signer {
 
+    /**
+     * 批量验签时,每个并行任务处理的签名数量
+     */
+    private static final int VERIFY_CHUNK = 16;
+
     private final SM2 sm2;
+    /**
+     * 公钥预计算表的缓存,为 null 时不缓存
+     */
+    private final PrecomputeCache cache;
+    /**
+     * 签名随机数的预计算池,为 null 时每次签名即时计算
+     */
+    private final NoncePool noncePool;
 
     public SM2Signer(SM2 sm2) {
+        this(sm2, null, null);
+    }
+
+    /**
+     * 验签时使用公钥预计算表的缓存,适合反复验证少量公钥的场景
+     *
+     * @param sm2   SM2 曲线
+     * @param cache 基于同一曲线的公钥预计算表缓存
+     */
+    public SM2Signer(SM2 sm2, PrecomputeCache cache) {
+        this(sm2, cache, null);
+    }
+
+    /**
+     * 签名时优先从预计算池中取出 (k, x1),池为空、未启动或已关闭时即时计算.
+     * <p>
+     * 签名器不持有池: 池可以由多个签名器共享,由创建者调用 {@link NoncePool#start()} 启动,
+     * 并在不再签名时调用 {@link NoncePool#close()} 关闭,签名器不会关闭它.
+     *
+     * @param sm2       SM2 曲线
+     * @param cache     基于同一曲线的公钥预计算表缓存,可以为 null
+     * @param noncePool 基于同一曲线的签名随机数预计算池,可以为 null
+     */
+    public SM2Signer(SM2 sm2, PrecomputeCache cache, NoncePool noncePool) {
+        if (cache != null && cache.getECC() != sm2) {
+            throw new IllegalArgumentException("cache belongs to another curve");
+        }
+        if (noncePool != null && noncePool.getSM2() != sm2) {
+            throw new IllegalArgumentException("nonce pool belongs to another curve");
+        }
         this.sm2 = sm2;
+        this.cache = cache;
+        this.noncePool = noncePool;
     }
 
     /**
@@ -47,19 +99,70 @@ public class SM2Signer {
         BigInteger d = keyPair.getPrivateKey();
         // A1 A2
         BigInteger e = new BigInteger(1, GMUtil.sm3(keyPair.getZ(), msg));
+        BigInteger inv = d.add(BigInteger.ONE).modInverse(n);
+        return this.sign(e, inv, d.multiply(inv).mod(n));
+    }
+
+    /**
+     * 使用预处理的秘钥签名,无需求逆
+     *
+     * @param key 预处理的秘钥
+     * @param msg 消息
+     * @return 签名信息
+     */
+    public Signature sign(PreparedKey key, byte[] msg) {
+        this.checkCurve(key);
+        // A1 A2
+        return this.sign(key.hash(msg), key.getInv(), key.getDInv());
+    }
+
+    /**
+     * 对已计算的杂凑值签名,适用于在其他位置计算 e = SM3(Z ∥ M) 的场景
+     *
+     * @param key 预处理的秘钥
+     * @param e   杂凑值 SM3(Z ∥ M)
+     * @return 签名信息
+     */
+    public Signature signHash(PreparedKey key, byte[] e) {
+        this.checkCurve(key);
+        return this.sign(new BigInteger(1, e), key.getInv(), key.getDInv());
+    }
+
+    private void checkCurve(PreparedKey key) {
+        if (key.getSM2() != this.sm2) {
+            throw new IllegalArgumentException("key belongs to another curve");
+        }
+    }
+
+    /**
+     * 6.1 A3 - A7
+     *
+     * @param e    杂凑值
+     * @param inv  (1 + d) ^ -1 mod n
+     * @param dInv d * (1 + d) ^ -1 mod n
+     */
+    private Signature sign(BigInteger e, BigInteger inv, BigInteger dInv) {
+        BigInteger n = this.sm2.getN();
         BigInteger r, s;
         do {
             BigInteger k;
             do {
-                // A3
-                k = RandomUtil.secureRandomBigDecimal(n);
-                // A4 椭圆曲线点 (x1, y1)
-                ECPoint p = this.sm2.multiplyG(k);
+                NoncePool.Nonce nonce = this.noncePool == null ? null : this.noncePool.poll();
+                BigInteger x1;
+                if (nonce != null) {
+                    k = nonce.k;
+                    x1 = nonce.x1;
+                } else {
+                    // A3
+                    k = RandomUtil.secureRandomBigDecimal(n);
+                    // A4 椭圆曲线点 (x1, y1)
+                    x1 = this.sm2.multiplyG(k).getX();
+                }
                 // A5
-                r = e.add(p.getX()).mod(n);
+                r = e.add(x1).mod(n);
             } while (r.equals(BigInteger.ZERO) || r.add(k).equals(n));
-            // A6
-            s = d.add(BigInteger.ONE).modInverse(n).multiply(k.subtract(r.multiply(d))).mod(n);
+            // A6: s = (1 + d) ^ -1 * (k - r * d) = inv * k - r * dInv
+            s = inv.multiply(k).subtract(r.multiply(dInv)).mod(n);
         } while (s.equals(BigInteger.ZERO));
         return new Signature(r, s);
     }
@@ -74,6 +177,108 @@ public class SM2Signer {
      * @return 签名是否有效
      */
     public boolean verify(ECPoint publicKey, byte[] z, Signature signature, byte[] msg) {
+        // B1 B2
+        if (!this.checkRange(signature)) {
+            return false;
+        }
+        // B3 B4
+        BigInteger e = new BigInteger(1, GMUtil.sm3(z, msg));
+        return this.verify(publicKey, e, signature);
+    }
+
+    /**
+     * 使用公共的 ForkJoin 线程池批量验签
+     *
+     * @see #verifyAll(List, Executor)
+     */
+    public BitSet verifyAll(List<VerifyRequest> requests) {
+        return this.verifyAll(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 批量验签.
+     * <p>
+     * 先并行计算所有的杂凑值 e,再并行完成各项的点运算,所有任务共用基点的预计算表.
+     *
+     * @param requests 待验证的签名
+     * @param executor 执行并行计算的线程池
+     * @return 第 i 位表示第 i 项的签名是否有效
+     */
+    public BitSet verifyAll(List<VerifyRequest> requests, Executor executor) {
+        boolean[] valid = this.verifyAll(requests, executor, null);
+        BitSet rst = new BitSet(valid.length);
+        for (int i = 0; i < valid.length; i++) {
+            rst.set(i, valid[i]);
+        }
+        return rst;
+    }
+
+    /**
+     * 使用公共的 ForkJoin 线程池批量验签,只判断是否全部有效
+     *
+     * @see #verifyAllValid(List, Executor)
+     */
+    public boolean verifyAllValid(List<VerifyRequest> requests) {
+        return this.verifyAllValid(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 批量验签,只判断是否全部有效,发现任意一项无效后其余尚未开始的验证不再进行
+     *
+     * @param requests 待验证的签名
+     * @param executor 执行并行计算的线程池
+     * @return 是否全部有效
+     */
+    public boolean verifyAllValid(List<VerifyRequest> requests, Executor executor) {
+        AtomicBoolean failed = new AtomicBoolean();
+        this.verifyAll(requests, executor, failed);
+        return !failed.get();
+    }
+
+    /**
+     * @param failed 不为 null 时,任意一项无效即将其置为 true 并跳过剩余的项
+     */
+    private boolean[] verifyAll(List<VerifyRequest> requests, Executor executor, AtomicBoolean failed) {
+        int size = requests.size();
+        boolean[] valid = new boolean[size];
+        BigInteger[] es = new BigInteger[size];
+        // B1 - B4
+        ParallelUtil.forEachChunk(0, size, VERIFY_CHUNK, executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (failed != null && failed.get()) {
+                    return;
+                }
+                VerifyRequest request = requests.get(i);
+                valid[i] = this.checkRange(request.getSignature());
+                if (valid[i]) {
+                    es[i] = new BigInteger(1, GMUtil.sm3(request.getZ(), request.getMsg()));
+                } else if (failed != null) {
+                    failed.set(true);
+                }
+            }
+        });
+        // B5 - B7
+        ParallelUtil.forEachChunk(0, size, VERIFY_CHUNK, executor, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (failed != null && failed.get()) {
+                    return;
+                }
+                if (valid[i]) {
+                    VerifyRequest request = requests.get(i);
+                    valid[i] = this.verify(request.getPublicKey(), es[i], request.getSignature());
+                }
+                if (!valid[i] && failed != null) {
+                    failed.set(true);
+                }
+            }
+        });
+        return valid;
+    }
+
+    /**
+     * B1 B2: r, s 位于 [1, n - 1]
+     */
+    private boolean checkRange(Signature signature) {
         BigInteger r = signature.getR();
         BigInteger s = signature.getS();
         BigInteger n = this.sm2.getN();
@@ -82,18 +287,30 @@ public class SM2Signer {
             return false;
         }
         // B2
-        if (s.compareTo(BigInteger.ZERO) < 1 || s.compareTo(n) > -1) {
-            return false;
-        }
-        // B3 B4
-        BigInteger e = new BigInteger(1, GMUtil.sm3(z, msg));
+        return s.compareTo(BigInteger.ZERO) >= 1 && s.compareTo(n) <= -1;
+    }
+
+    /**
+     * B5 - B7,r, s 的范围已经校验
+     *
+     * @param e 杂凑值 e
+     */
+    private boolean verify(ECPoint publicKey, BigInteger e, Signature signature) {
+        BigInteger r = signature.getR();
+        BigInteger s = signature.getS();
+        BigInteger n = this.sm2.getN();
         // B5
         BigInteger t = r.add(s).mod(n);
         if (t.equals(BigInteger.ZERO)) {
             return false;
         }
         // B6 椭圆曲线点 (x1', y1')
-        ECPoint p = this.sm2.add(this.sm2.multiplyG(s), this.sm2.multiply(publicKey, t));
+        ECPoint p = this.cache == null
+                ? this.sm2.multiplyAdd(s, this.sm2.getG(), t, publicKey)
+                : this.cache.multiplyAdd(s, this.sm2.getG(), t, publicKey);
+        if (p.isInfinity()) {
+            return false;
+        }
         // B7
         BigInteger expectedR = p.getX().add(e).mod(n);
         return expectedR.equals(r);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.signer;
+
+import com.github.black.crypto.algorithm.ECPoint;
+
+/**
+ * 批量验签中的一项
+ */
+public class VerifyRequest {
+
+    private final ECPoint publicKey;
+    private final byte[] z;
+    private final Signature signature;
+    private final byte[] msg;
+
+    /**
+     * @param publicKey 公钥
+     * @param z         签名用户信息
+     * @param signature 签名信息
+     * @param msg       消息
+     */
+    public VerifyRequest(ECPoint publicKey, byte[] z, Signature signature, byte[] msg) {
+        this.publicKey = publicKey;
+        this.z = z;
+        this.signature = signature;
+        this.msg = msg;
+    }
+
+    public ECPoint getPublicKey() {
+        return publicKey;
+    }
+
+    public byte[] getZ() {
+        return z;
+    }
+
+    public Signature getSignature() {
+        return signature;
+    }
+
+    public byte[] getMsg() {
+        return msg;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 线程安全的有界 LRU 缓存.
+ * <p>
+ * 按键的哈希分为若干段,每段是一个按访问顺序排列的 {@link LinkedHashMap},由各自的锁保护,
+ * 总容量按权重平均分配到各段,某段超出容量时淘汰该段最久未使用的条目.
+ * 值的计算在锁外进行,并发计算同一个键时可能重复计算,以先写入的结果为准.
+ *
+ * @param <K> 键
+ * @param <V> 值
+ */
+public final class LruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+
+    /**
+     * 每个条目权重为 1 的缓存
+     *
+     * @param capacity 最大条目数
+     */
+    public LruCache(long capacity) {
+        this(capacity, v -> 1);
+    }
+
+    /**
+     * @param maxWeight 所有条目的最大总权重
+     * @param weigher   条目的权重,例如占用的字节数
+     */
+    public LruCache(long maxWeight, ToLongFunction<? super V> weigher) {
+        this(maxWeight, weigher, MAX_SEGMENTS);
+    }
+
+    /**
+     * @param maxWeight   所有条目的最大总权重
+     * @param weigher     条目的权重,例如占用的字节数
+     * @param concurrency 最大分段数,单个条目较重时应减少分段,使每段至少能容纳若干条目
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LruCache(long maxWeight, ToLongFunction<? super V> weigher, int concurrency) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("max weight must be positive");
+        }
+        int limit = Math.min(Math.max(concurrency, 1), MAX_SEGMENTS);
+        int count = 1;
+        while (count * 2 <= limit && count * 2 <= maxWeight) {
+            count <<= 1;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment<>(maxWeight / count, weigher);
+        }
+    }
+
+    /**
+     * @return 缓存的值,不存在时返回 null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = this.segment(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * 获取缓存的值,不存在时计算并放入缓存
+     *
+     * @param key      键
+     * @param function 计算值的函数,返回 null 时不缓存
+     * @return 缓存或计算得到的值
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        V value = this.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = function.apply(key);
+        if (value == null) {
+            return null;
+        }
+        Segment<K, V> segment = this.segment(key);
+        synchronized (segment) {
+            V exist = segment.get(key);
+            if (exist != null) {
+                return exist;
+            }
+            segment.putWeighted(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 放入缓存,权重超过单段容量的值不会被缓存
+     */
+    public void put(K key, V value) {
+        Segment<K, V> segment = this.segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+            segment.putWeighted(key, value);
+        }
+    }
+
+    public void remove(K key) {
+        Segment<K, V> segment = this.segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return 当前条目数
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return 当前所有条目的总权重
+     */
+    public long weight() {
+        long weight = 0;
+        for (Segment<K, V> segment : this.segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    private Segment<K, V> segment(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return this.segments[h & (this.segments.length - 1)];
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long maxWeight;
+        private final ToLongFunction<? super V> weigher;
+        private long weight;
+
+        Segment(long maxWeight, ToLongFunction<? super V> weigher) {
+            super(16, 0.75f, true);
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+        }
+
+        void putWeighted(K key, V value) {
+            long w = this.weigher.applyAsLong(value);
+            if (w > this.maxWeight) {
+                return;
+            }
+            super.put(key, value);
+            this.weight += w;
+            // 按访问顺序从最久未使用的条目开始淘汰
+            Iterator<V> it = this.values().iterator();
+            while (this.weight > this.maxWeight && it.hasNext()) {
+                this.weight -= this.weigher.applyAsLong(it.next());
+                it.remove();
+            }
+        }
+
+        @Override
+        public V remove(Object key) {
+            V value = super.remove(key);
+            if (value != null) {
+                this.weight -= this.weigher.applyAsLong(value);
+            }
+            return value;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            this.weight = 0;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 批量运算的并行工具,将区间切分为固定大小的段并提交到线程池
+ */
+public final class ParallelUtil {
+
+    private ParallelUtil() {
+    }
+
+    /**
+     * 将 [from, to) 切分为不超过 chunk 的段并行处理,等待全部完成.
+     * 处理中抛出的 RuntimeException 原样抛出
+     *
+     * @param from     区间起点,包含
+     * @param to       区间终点,不包含
+     * @param chunk    每段的最大长度
+     * @param executor 执行并行计算的线程池
+     * @param action   对每一段的处理,同一段由一个线程独立完成
+     */
+    public static void forEachChunk(int from, int to, int chunk, Executor executor, RangeAction action) {
+        if (chunk < 1) {
+            throw new IllegalArgumentException("chunk must be positive");
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int start = from; start < to; start += chunk) {
+            int s = start;
+            int e = (int) Math.min(to, (long) start + chunk);
+            futures.add(CompletableFuture.runAsync(() -> action.run(s, e), executor));
+            if (e == to) {
+                break;
+            }
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 对区间 [from, to) 的处理
+     */
+    public interface RangeAction {
+        void run(int from, int to);
+    }
+}
@@ -22,7 +22,10 @@ import java.util.Random;
 
 public class RandomUtil {
 
-    private static final ThreadLocal<SecureRandom> RANDOM = new ThreadLocal<>();
+    /**
+     * 每个线程各自的 SM3 随机数发生器,生成时无需竞争锁
+     */
+    private static final ThreadLocal<SM3Drbg> RANDOM = ThreadLocal.withInitial(SM3Drbg::new);
 
     /**
      * 加密强随机生成位于 (0,n) 区间的随机数
@@ -42,12 +45,14 @@ public class RandomUtil {
      * @return 随机数
      */
     public static BigInteger secureRandomBigDecimal(BigInteger start, BigInteger end) {
-        SecureRandom random = RANDOM.get();
-        if (random == null) {
-            random = new SecureRandom();
-            RANDOM.set(random);
-        }
-        return randomBigDecimal(start, end, random);
+        return RANDOM.get().nextBetween(start, end);
+    }
+
+    /**
+     * @return 当前线程的加密强随机数发生器
+     */
+    public static SecureRandom secureRandom() {
+        return RANDOM.get();
     }
 
     public static BigInteger randomBigDecimal(BigInteger start, BigInteger end, Random random) {
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.util;
+
+import com.github.black.crypto.digests.SM3Digest;
+
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.security.DigestException;
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 SM3 为杂凑函数的 Hash_DRBG 随机数发生器,算法与 NIST SP 800-90A 10.1.1 相同,参数取 GM/T 0105-2021 的要求:
+ * seedlen 为 440 比特,每生成 2 ^ 20 次或距上次播种超过 60 秒时,从操作系统重新获取熵并重播种.
+ * <p>
+ * 每次生成只需少量 SM3 压缩,不读取 /dev/urandom,也不竞争全局锁,适合每个线程各持有一个实例,见 {@link RandomUtil}.
+ * 短请求从一次生成的 256 字节输出中依次取用,已取用的部分立即清零.
+ * 实例的方法是同步的,在线程之间共享时结果仍然正确,但会失去上述优势.
+ * <p>
+ * 内部状态即秘密,实例不支持序列化.
+ */
+public final class SM3Drbg extends SecureRandom {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * seedlen,440 比特
+     */
+    private static final int SEED_LEN = 55;
+    private static final int OUT_LEN = 32;
+    private static final int ENTROPY_LEN = 32;
+    private static final int NONCE_LEN = 16;
+
+    /**
+     * 两次重播种之间最多的生成次数
+     */
+    private static final long RESEED_INTERVAL = 1L << 20;
+    /**
+     * 两次重播种之间最长的时间
+     */
+    private static final long RESEED_NANOS = TimeUnit.SECONDS.toNanos(60);
+    /**
+     * 单次生成的最大字节数,更长的请求拆分为多次生成
+     */
+    private static final int MAX_BYTES_PER_REQUEST = 1 << 16;
+
+    /**
+     * 短请求的输出缓冲区大小. 每次生成的末尾都要以两次压缩更新 V,
+     * 一次生成 256 字节供多个短请求使用,可将这部分开销分摊到 8 个输出分组上
+     */
+    private static final int BUFFER_SIZE = 256;
+
+    /**
+     * 熵源,仅在播种时使用
+     */
+    private static final SecureRandom ENTROPY = new SecureRandom();
+
+    private final transient SM3Digest sm3 = new SM3Digest();
+    private final byte[] v = new byte[SEED_LEN];
+    private final byte[] c = new byte[SEED_LEN];
+    private final byte[] data = new byte[SEED_LEN];
+    private final byte[] block = new byte[OUT_LEN];
+    /**
+     * 尚未使用的输出位于 [bufferOffset, BUFFER_SIZE),已使用的部分立即清零
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferOffset = BUFFER_SIZE;
+    private long reseedCounter;
+    private long reseedTime;
+    /**
+     * 是否按时间重播种,仅在使用固定的熵测试时关闭
+     */
+    private final boolean timedReseed;
+
+    /**
+     * 从操作系统获取熵并实例化
+     */
+    public SM3Drbg() {
+        this(null);
+    }
+
+    /**
+     * 从操作系统获取熵并实例化
+     *
+     * @param personalization 个性化字符串,可以为 null
+     */
+    public SM3Drbg(byte[] personalization) {
+        this(entropy(ENTROPY_LEN), entropy(NONCE_LEN), personalization, true);
+    }
+
+    /**
+     * 使用给定的熵实例化,用于已知答案测试
+     */
+    SM3Drbg(byte[] entropy, byte[] nonce, byte[] personalization, boolean timedReseed) {
+        // 传入空实现的 SPI,避免父类创建并播种一个不会被使用的默认 SPI
+        super(NoSpi.INSTANCE, null);
+        this.timedReseed = timedReseed;
+        this.hashDf(this.v, entropy, nonce, personalization);
+        this.updateC();
+    }
+
+    /**
+     * @return 位于 [1, n - 1] 区间的均匀随机数,例如 SM2 的私钥或签名的 k
+     */
+    public BigInteger nextScalar(BigInteger n) {
+        return this.nextBetween(BigInteger.ZERO, n);
+    }
+
+    /**
+     * 生成位于 (start, end) 区间的随机数.
+     * 生成比区间长度多 64 比特的随机数再取模,偏差不超过 2 ^ -64,无需拒绝采样
+     *
+     * @param start 开区间左端点,不包含
+     * @param end   开区间右端点,不包含
+     * @return 随机数
+     */
+    public BigInteger nextBetween(BigInteger start, BigInteger end) {
+        BigInteger range = end.subtract(start).subtract(BigInteger.ONE);
+        if (range.signum() <= 0) {
+            throw new IllegalArgumentException("empty interval");
+        }
+        byte[] bytes = new byte[(range.bitLength() + 64 + 7) / 8];
+        this.nextBytes(bytes);
+        return new BigInteger(1, bytes).mod(range).add(start).add(BigInteger.ONE);
+    }
+
+    @Override
+    public synchronized void nextBytes(byte[] bytes) {
+        if (bytes.length >= BUFFER_SIZE) {
+            for (int offset = 0; offset < bytes.length; offset += MAX_BYTES_PER_REQUEST) {
+                this.generate(bytes, offset, Math.min(MAX_BYTES_PER_REQUEST, bytes.length - offset));
+            }
+            return;
+        }
+        for (int offset = 0; offset < bytes.length; ) {
+            if (this.bufferOffset == BUFFER_SIZE) {
+                this.generate(this.buffer, 0, BUFFER_SIZE);
+                this.bufferOffset = 0;
+            }
+            int n = Math.min(BUFFER_SIZE - this.bufferOffset, bytes.length - offset);
+            System.arraycopy(this.buffer, this.bufferOffset, bytes, offset, n);
+            Arrays.fill(this.buffer, this.bufferOffset, this.bufferOffset + n, (byte) 0);
+            this.bufferOffset += n;
+            offset += n;
+        }
+    }
+
+    /**
+     * 将 seed 作为附加输入重播种,不会降低已有的熵
+     */
+    @Override
+    public synchronized void setSeed(byte[] seed) {
+        // 父类的构造函数会调用 setSeed,此时尚未实例化
+        if (this.sm3 == null) {
+            return;
+        }
+        this.reseedWith(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        byte[] bytes = new byte[8];
+        PackUtil.intToBigEndian((int) (seed >>> 32), bytes, 0);
+        PackUtil.intToBigEndian((int) seed, bytes, 4);
+        this.setSeed(bytes);
+    }
+
+    @Override
+    public byte[] generateSeed(int numBytes) {
+        return ENTROPY.generateSeed(numBytes);
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return "SM3-Hash_DRBG";
+    }
+
+    private void writeObject(ObjectOutputStream out) throws NotSerializableException {
+        throw new NotSerializableException(SM3Drbg.class.getName());
+    }
+
+    private void readObject(ObjectInputStream in) throws NotSerializableException {
+        throw new NotSerializableException(SM3Drbg.class.getName());
+    }
+
+    /**
+     * 10.1.1.3 重播种: V = Hash_df(0x01 ∥ V ∥ entropy ∥ additional),C = Hash_df(0x00 ∥ V)
+     */
+    private void reseedWith(byte[] additional) {
+        // 丢弃重播种之前生成的输出
+        Arrays.fill(this.buffer, (byte) 0);
+        this.bufferOffset = BUFFER_SIZE;
+        byte[] seed = new byte[SEED_LEN];
+        this.hashDf(seed, new byte[]{0x01}, this.v, entropy(ENTROPY_LEN), additional);
+        System.arraycopy(seed, 0, this.v, 0, SEED_LEN);
+        this.updateC();
+    }
+
+    private void updateC() {
+        this.hashDf(this.c, new byte[]{0x00}, this.v);
+        this.reseedCounter = 1;
+        this.reseedTime = System.nanoTime();
+    }
+
+    /**
+     * 10.1.1.4 生成,不使用附加输入
+     */
+    void generate(byte[] out, int offset, int len) {
+        if (this.reseedCounter > RESEED_INTERVAL
+                || (this.timedReseed && System.nanoTime() - this.reseedTime > RESEED_NANOS)) {
+            this.reseedWith(null);
+        }
+        // Hashgen: 依次输出 Hash(data), data = data + 1
+        System.arraycopy(this.v, 0, this.data, 0, SEED_LEN);
+        for (int pos = 0; pos < len; pos += OUT_LEN) {
+            this.sm3.update(this.data);
+            int n = Math.min(OUT_LEN, len - pos);
+            if (n == OUT_LEN) {
+                this.digest(out, offset + pos);
+            } else {
+                this.digest(this.block, 0);
+                System.arraycopy(this.block, 0, out, offset + pos, n);
+            }
+            addLong(this.data, 1);
+        }
+        // V = V + Hash(0x03 ∥ V) + C + reseed_counter
+        this.sm3.update((byte) 0x03);
+        this.sm3.update(this.v);
+        this.digest(this.block, 0);
+        add(this.v, this.block);
+        add(this.v, this.c);
+        addLong(this.v, this.reseedCounter);
+        this.reseedCounter++;
+    }
+
+    /**
+     * 10.3.1 Hash_df,输出的长度为 out.length
+     */
+    private void hashDf(byte[] out, byte[]... inputs) {
+        byte[] bits = new byte[4];
+        PackUtil.intToBigEndian(out.length * 8, bits, 0);
+        byte counter = 1;
+        for (int pos = 0; pos < out.length; pos += OUT_LEN, counter++) {
+            this.sm3.update(counter);
+            this.sm3.update(bits);
+            for (byte[] input : inputs) {
+                if (input != null) {
+                    this.sm3.update(input);
+                }
+            }
+            this.digest(this.block, 0);
+            System.arraycopy(this.block, 0, out, pos, Math.min(OUT_LEN, out.length - pos));
+        }
+    }
+
+    private void digest(byte[] out, int offset) {
+        try {
+            this.sm3.digest(out, offset, OUT_LEN);
+        } catch (DigestException e) {
+            // 输出空间总是足够的
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * a = (a + b) mod 2 ^ (8 * a.length),均为大端序,b 不长于 a
+     */
+    private static void add(byte[] a, byte[] b) {
+        int carry = 0;
+        int i = a.length - 1;
+        for (int j = b.length - 1; j >= 0; i--, j--) {
+            carry += (a[i] & 0xFF) + (b[j] & 0xFF);
+            a[i] = (byte) carry;
+            carry >>>= 8;
+        }
+        for (; carry != 0 && i >= 0; i--) {
+            carry += a[i] & 0xFF;
+            a[i] = (byte) carry;
+            carry >>>= 8;
+        }
+    }
+
+    /**
+     * a = (a + n) mod 2 ^ (8 * a.length),n 为非负数
+     */
+    private static void addLong(byte[] a, long n) {
+        long carry = 0;
+        for (int i = a.length - 1; i >= 0 && (n != 0 || carry != 0); i--) {
+            carry += (a[i] & 0xFF) + (n & 0xFF);
+            a[i] = (byte) carry;
+            carry >>>= 8;
+            n >>>= 8;
+        }
+    }
+
+    private static byte[] entropy(int len) {
+        byte[] bytes = new byte[len];
+        ENTROPY.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * SM3Drbg 重写了 {@link SecureRandom} 中所有委托给 SPI 的基本方法,SPI 不会被调用
+     */
+    private static final class NoSpi extends SecureRandomSpi {
+
+        private static final long serialVersionUID = 1L;
+
+        static final NoSpi INSTANCE = new NoSpi();
+
+        @Override
+        protected void engineSetSeed(byte[] seed) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void engineNextBytes(byte[] bytes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected byte[] engineGenerateSeed(int numBytes) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.github.black.crypto.agreement;
 
 import com.github.black.crypto.algorithm.ECCKeyPair;
 import com.github.black.crypto.algorithm.ECPoint;
+import com.github.black.crypto.algorithm.MultiplyMode;
 import com.github.black.crypto.algorithm.SM2;
 import com.github.black.crypto.algorithm.SM2KeyPair;
 import org.junit.Assert;
@@ -101,4 +102,31 @@ public class SM2AgreementTest {
         Assert.assertArrayEquals(pairA.getPrivateSymmetricKey(), pairB.getPrivateSymmetricKey());
     }
 
+    @Test(expected = KeyAgreementException.class)
+    public void testIllegalStaticKey() throws KeyAgreementException {
+        SM2KeyPair kpa = SM2.generateKeyPair(ID_A);
+        SM2KeyPair kpb = SM2.generateKeyPair(ID_B);
+        ECCKeyPair rb = SM2.generateKeyPair();
+        ECPoint pa = kpa.getPublicKey();
+        // 不在曲线上的静态公钥
+        ECPoint illegal = new ECPoint(pa.getX(), pa.getY().add(BigInteger.ONE));
+        PublicInfo initiator = new PublicInfo(true, 16, kpa.getZ(), illegal, SM2.generateKeyPair().getPublicKey(), null);
+        agreement.generate(initiator, kpb, rb);
+    }
+
+    @Test
+    public void testLadder() throws KeyAgreementException {
+        SM2 ladder = new SM2(SM2.getA(), SM2.getB(), SM2.getP(), SM2.getG().getX(), SM2.getG().getY(), SM2.getN(), SM2.getH());
+        ladder.setMultiplyMode(MultiplyMode.LADDER);
+        SM2KeyPair kpa = SM2.generateKeyPair(ID_A);
+        SM2KeyPair kpb = SM2.generateKeyPair(ID_B);
+        ECCKeyPair ra = SM2.generateKeyPair();
+        ECCKeyPair rb = SM2.generateKeyPair();
+        PublicInfo initiator = new PublicInfo(true, 16, kpa.getZ(), kpa.getPublicKey(), ra.getPublicKey(), null);
+        AgreementPair pairB = new SM2Agreement(ladder).generate(initiator, kpb, rb);
+        PublicInfo responder = new PublicInfo(false, 16, kpb.getZ(), kpb.getPublicKey(), rb.getPublicKey(), pairB.getS());
+        AgreementPair pairA = agreement.generate(responder, kpa, ra);
+        Assert.assertArrayEquals(pairA.getPrivateSymmetricKey(), pairB.getPrivateSymmetricKey());
+    }
+
 }
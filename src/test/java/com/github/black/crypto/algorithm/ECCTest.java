@@ -22,6 +22,13 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ECCTest {
 
@@ -63,4 +70,204 @@ public class ECCTest {
         Assert.assertTrue(signer.verify(p.getPublicKey(), s, msg));
         Assert.assertFalse(signer.verify(p.getPublicKey(), s, "Hi there!"));
     }
+
+    @Test
+    public void testMultiplyG() {
+        Random random = new Random(42);
+        for (ECC ecc : new ECC[]{SECP256K1, SM2.SPEC}) {
+            for (int i = 0; i < 20; i++) {
+                BigInteger k = new BigInteger(ecc.getN().bitLength(), random);
+                Assert.assertEquals(ecc.multiply(ecc.getG(), k), ecc.multiplyG(k));
+            }
+            Assert.assertEquals(ecc.getG(), ecc.multiplyG(BigInteger.ONE));
+            Assert.assertTrue(ecc.multiplyG(BigInteger.ZERO).isInfinity());
+            Assert.assertTrue(ecc.multiplyG(ecc.getN()).isInfinity());
+            // 超出预计算表范围的标量
+            BigInteger k = ecc.getN().shiftLeft(3).add(BigInteger.TEN);
+            Assert.assertEquals(ecc.multiply(ecc.getG(), k), ecc.multiplyG(k));
+        }
+        // 阶为 5 的基点无法构建预计算表
+        ECC small = new ECC(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97),
+                BigInteger.valueOf(3), BigInteger.valueOf(6), BigInteger.valueOf(5), BigInteger.ONE);
+        for (int i = 0; i < 12; i++) {
+            BigInteger k = BigInteger.valueOf(i);
+            Assert.assertEquals(small.multiply(small.getG(), k), small.multiplyG(k));
+        }
+    }
+
+    @Test
+    public void testCheckPublicKey() {
+        // 曲线共 100 个点,基点 (3, 6) 的阶为 5,辅因子为 20
+        ECC small = new ECC(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97),
+                BigInteger.valueOf(3), BigInteger.valueOf(6), BigInteger.valueOf(5), BigInteger.valueOf(20));
+        small.checkPublicKey(small.getG());
+        small.checkStaticPublicKey(small.getG());
+        small.checkStaticPublicKey(small.getG());
+        // (0, 10) 在曲线上,但阶为 50
+        ECPoint outside = new ECPoint(BigInteger.ZERO, BigInteger.valueOf(10));
+        assertIllegal(() -> small.checkPoint(outside));
+        assertIllegal(() -> small.checkStaticPublicKey(outside));
+        assertIllegal(() -> small.checkStaticPublicKey(outside));
+        // h = 1 时只需验证点在曲线上
+        ECCKeyPair keyPair = SECP256K1.generateKeyPair();
+        ECPoint p = keyPair.getPublicKey();
+        SECP256K1.checkPublicKey(p);
+        SECP256K1.checkStaticPublicKey(p);
+        SECP256K1.checkStaticPublicKey(p);
+        assertIllegal(() -> SECP256K1.checkPublicKey(ECPoint.INFINITY));
+        assertIllegal(() -> SECP256K1.checkPublicKey(new ECPoint(p.getX(), p.getY().add(SECP256K1.getP()))));
+        assertIllegal(() -> SECP256K1.checkPublicKey(new ECPoint(p.getX(), p.getY().add(BigInteger.ONE))));
+    }
+
+    @Test
+    public void testDeserializePoint() {
+        // SM2 曲线使用专用的平方根,secp256k1 使用通用的平方根,p = 97 时 p ≡ 1 (mod 4),使用 Tonelli-Shanks 算法
+        ECC small = new ECC(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97),
+                BigInteger.valueOf(3), BigInteger.valueOf(6), BigInteger.valueOf(5), BigInteger.valueOf(20));
+        for (ECC ecc : new ECC[]{SM2.SPEC, SECP256K1, small}) {
+            for (int i = 1; i < 5; i++) {
+                ECPoint p = ecc.multiplyG(BigInteger.valueOf(i).shiftLeft(i * 40).add(BigInteger.valueOf(i)));
+                Assert.assertEquals(p, ecc.deserializePoint(ecc.serializePoint(p, false)));
+                Assert.assertEquals(p, ecc.deserializePoint(ecc.serializePoint(p, true)));
+            }
+            Assert.assertTrue(ecc.deserializePoint(ecc.serializePoint(ECPoint.INFINITY, true)).isInfinity());
+            byte[] bytes = ecc.serializePoint(ecc.getG(), true);
+            assertIllegal(() -> ecc.deserializePoint(new byte[0]));
+            assertIllegal(() -> ecc.deserializePoint(Arrays.copyOf(bytes, bytes.length - 1)));
+            bytes[0] = 0x05;
+            assertIllegal(() -> ecc.deserializePoint(bytes));
+        }
+        // 不存在横坐标为 2 的点
+        byte[] bytes = new byte[33];
+        bytes[0] = 0x02;
+        bytes[32] = 2;
+        assertIllegal(() -> SM2.SPEC.deserializePoint(bytes));
+        // 横坐标超出范围
+        Arrays.fill(bytes, 1, 33, (byte) 0xFF);
+        assertIllegal(() -> SM2.SPEC.deserializePoint(bytes));
+        // 不在曲线上
+        ECPoint g = SM2.SPEC.getG();
+        assertIllegal(() -> SM2.SPEC.deserializePoint(
+                SM2.SPEC.serializePoint(new ECPoint(g.getX(), g.getY().add(BigInteger.ONE)), false)));
+        // 在曲线上,但不属于阶为 n 的子群
+        assertIllegal(() -> small.deserializePoint(new byte[]{0x02, 0}));
+        assertIllegal(() -> small.deserializePoint(new byte[]{0x04, 0, 10}));
+    }
+
+    private static void assertIllegal(Runnable runnable) {
+        try {
+            runnable.run();
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testLadder() {
+        Random random = new Random(5);
+        for (ECC spec : new ECC[]{SECP256K1, SM2.SPEC}) {
+            ECC ecc = new ECC(spec.getA(), spec.getB(), spec.getP(),
+                    spec.getG().getX(), spec.getG().getY(), spec.getN(), spec.getH());
+            ecc.setMultiplyMode(MultiplyMode.LADDER);
+            Assert.assertEquals(MultiplyMode.LADDER, ecc.getMultiplyMode());
+            ECPoint p = spec.multiplyG(new BigInteger(256, random));
+            BigInteger n = spec.getN();
+            List<BigInteger> ks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                ks.add(new BigInteger(n.bitLength(), random));
+            }
+            ks.add(BigInteger.ONE);
+            ks.add(BigInteger.valueOf(2));
+            ks.add(n.subtract(BigInteger.ONE));
+            ks.add(n.add(BigInteger.valueOf(3)));
+            ks.add(BigInteger.valueOf(-7));
+            for (BigInteger k : ks) {
+                Assert.assertEquals(spec.multiply(p, k), ecc.multiply(p, k));
+                Assert.assertEquals(spec.multiplyG(k), ecc.multiplyG(k));
+                Assert.assertEquals(spec.multiplyAdd(k, p, k.add(BigInteger.ONE), spec.getG()),
+                        ecc.multiplyAdd(k, p, k.add(BigInteger.ONE), ecc.getG()));
+            }
+            Assert.assertTrue(ecc.multiply(p, BigInteger.ZERO).isInfinity());
+            Assert.assertTrue(ecc.multiply(p, n).isInfinity());
+            Assert.assertTrue(ecc.multiplyG(n.shiftLeft(1)).isInfinity());
+        }
+        // 阶为 5 的小曲线上频繁出现退化
+        ECC small = new ECC(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97),
+                BigInteger.valueOf(3), BigInteger.valueOf(6), BigInteger.valueOf(5), BigInteger.ONE);
+        List<ECPoint> expected = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            expected.add(small.multiplyG(BigInteger.valueOf(i)));
+        }
+        small.setMultiplyMode(MultiplyMode.LADDER);
+        for (int i = 0; i < 12; i++) {
+            Assert.assertEquals(expected.get(i), small.multiplyG(BigInteger.valueOf(i)));
+        }
+        // 辅因子为 20 时,子群外的点 (0, 10) 不使用阶梯,结果不受 k mod n 的影响
+        ECC wNaf = new ECC(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97),
+                BigInteger.valueOf(3), BigInteger.valueOf(6), BigInteger.valueOf(5), BigInteger.valueOf(20));
+        ECC ladder = new ECC(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97),
+                BigInteger.valueOf(3), BigInteger.valueOf(6), BigInteger.valueOf(5), BigInteger.valueOf(20));
+        ladder.setMultiplyMode(MultiplyMode.LADDER);
+        ECPoint outside = new ECPoint(BigInteger.ZERO, BigInteger.valueOf(10));
+        for (int i = 0; i < 60; i++) {
+            BigInteger k = BigInteger.valueOf(i);
+            Assert.assertEquals(wNaf.multiply(outside, k), ladder.multiply(outside, k));
+            Assert.assertEquals(wNaf.multiply(wNaf.getG(), k), ladder.multiply(ladder.getG(), k));
+        }
+    }
+
+    @Test
+    public void testLadderPad() {
+        BigInteger n = SM2.SPEC.getN();
+        int bits = n.bitLength() + 1;
+        int[] nWords = FixedBaseTable.toWords(n, bits);
+        Random random = new Random(7);
+        List<BigInteger> ks = new ArrayList<>();
+        ks.add(BigInteger.ZERO);
+        ks.add(BigInteger.ONE);
+        ks.add(n.subtract(BigInteger.ONE));
+        // k + n 恰好达到 2 ^ (bits - 1) 的边界
+        ks.add(BigInteger.ONE.shiftLeft(bits - 1).subtract(n));
+        ks.add(BigInteger.ONE.shiftLeft(bits - 1).subtract(n).subtract(BigInteger.ONE));
+        for (int i = 0; i < 50; i++) {
+            ks.add(new BigInteger(n.bitLength(), random).mod(n));
+        }
+        for (BigInteger k : ks) {
+            BigInteger k1 = k.add(n);
+            BigInteger expected = k1.testBit(bits - 1) ? k1 : k1.add(n);
+            Assert.assertArrayEquals(FixedBaseTable.toWords(expected, bits),
+                    CoZLadder.pad(FixedBaseTable.toWords(k, bits), nWords, bits));
+        }
+    }
+
+    @Test
+    public void testLadderCheckPoint() {
+        ECC ecc = new ECC(SM2.SPEC.getA(), SM2.SPEC.getB(), SM2.SPEC.getP(),
+                SM2.SPEC.getG().getX(), SM2.SPEC.getG().getY(), SM2.SPEC.getN(), SM2.SPEC.getH());
+        ecc.setMultiplyMode(MultiplyMode.LADDER);
+        ecc.checkPoint(ecc.generateKeyPair().getPublicKey());
+        ECCSigner signer = new ECCSigner(ecc);
+        ECCKeyPair p = ecc.generateKeyPair();
+        Signature s = signer.sign(p.getPrivateKey(), "Hello!");
+        Assert.assertTrue(signer.verify(p.getPublicKey(), s, "Hello!"));
+    }
+
+    @Test
+    public void testMultiplyGConcurrently() throws Exception {
+        ECC ecc = new ECC(SM2.SPEC.getA(), SM2.SPEC.getB(), SM2.SPEC.getP(),
+                SM2.SPEC.getG().getX(), SM2.SPEC.getG().getY(), SM2.SPEC.getN(), SM2.SPEC.getH());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                BigInteger k = BigInteger.valueOf(i + 1).shiftLeft(200).add(BigInteger.valueOf(i));
+                futures.add(executor.submit(() -> ecc.multiplyG(k).equals(SM2.SPEC.multiply(SM2.SPEC.getG(), k))));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -20,6 +20,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.Random;
 
 public class ECOverFPTest {
 
@@ -65,4 +66,115 @@ public class ECOverFPTest {
         ec.checkPoint(r);
     }
 
+    @Test
+    public void testAdd() {
+        BigInteger[] is = new BigInteger[98];
+        for (int i = 0; i < is.length; i++) {
+            is[i] = BigInteger.valueOf(i);
+        }
+
+        ECOverFP ec = new ECOverFP(is[2], is[3], is[97]);
+
+        ECPoint p = new ECPoint(is[3], is[6]);
+
+        // p + p = 2p
+        Assert.assertEquals(ec.multiply(p, is[2]), ec.add(p, p));
+        // 2p + p = 3p
+        Assert.assertEquals(ec.multiply(p, is[3]), ec.add(ec.add(p, p), p));
+        // p + -p = 0
+        Assert.assertEquals(ECPoint.INFINITY, ec.add(p, new ECPoint(is[3], is[91])));
+        // p + 0 = p
+        Assert.assertEquals(p, ec.add(p, ECPoint.INFINITY));
+        Assert.assertEquals(p, ec.add(ECPoint.INFINITY, p));
+    }
+
+    @Test
+    public void testWNaf() {
+        Random random = new Random(7);
+        for (int width = WNaf.MIN_WIDTH; width <= WNaf.MAX_WIDTH; width++) {
+            for (int i = 0; i < 200; i++) {
+                BigInteger k = new BigInteger(1 + random.nextInt(300), random);
+                int[] naf = WNaf.generate(k, width);
+                BigInteger sum = BigInteger.ZERO;
+                int last = -width;
+                for (int j = 0; j < naf.length; j++) {
+                    int d = naf[j];
+                    if (d == 0) {
+                        continue;
+                    }
+                    // 非零位为奇数,绝对值小于 2 ^ (w - 1),且间隔至少 w 位
+                    Assert.assertEquals(1, d & 1);
+                    Assert.assertTrue(Math.abs(d) < (1 << (width - 1)));
+                    Assert.assertTrue(j - last >= width);
+                    last = j;
+                    sum = sum.add(BigInteger.valueOf(d).shiftLeft(j));
+                }
+                Assert.assertEquals(k, sum);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiplyWidth() {
+        SM2 sm2 = new SM2(SM2.SPEC.getA(), SM2.SPEC.getB(), SM2.SPEC.getP(),
+                SM2.SPEC.getG().getX(), SM2.SPEC.getG().getY(), SM2.SPEC.getN(), SM2.SPEC.getH());
+        Random random = new Random(11);
+        ECPoint p = sm2.multiplyG(new BigInteger(256, random));
+        // 小标量与逐次相加的结果一致
+        ECPoint sum = ECPoint.INFINITY;
+        for (int k = 0; k < 40; k++) {
+            for (int width = WNaf.MIN_WIDTH; width <= WNaf.MAX_WIDTH; width++) {
+                sm2.setWNafWidth(width);
+                Assert.assertEquals(sum, sm2.multiply(p, BigInteger.valueOf(k)));
+            }
+            sum = sm2.add(sum, p);
+        }
+        // 不同宽度的结果一致
+        for (int i = 0; i < 10; i++) {
+            BigInteger k = new BigInteger(256, random);
+            sm2.setWNafWidth(WNaf.MIN_WIDTH);
+            ECPoint expected = sm2.multiply(p, k);
+            for (int width = WNaf.MIN_WIDTH + 1; width <= WNaf.MAX_WIDTH; width++) {
+                sm2.setWNafWidth(width);
+                Assert.assertEquals(expected, sm2.multiply(p, k));
+            }
+            Assert.assertEquals(sm2.negate(expected), sm2.multiply(p, k.negate()));
+        }
+    }
+
+    @Test
+    public void testMultiplyAdd() {
+        Random random = new Random(13);
+        SM2 sm2 = SM2.SPEC;
+        ECPoint q = sm2.multiplyG(new BigInteger(256, random));
+        for (int i = 0; i < 10; i++) {
+            BigInteger k1 = new BigInteger(256, random);
+            BigInteger k2 = new BigInteger(1 + random.nextInt(256), random);
+            ECPoint expected = sm2.add(sm2.multiply(q, k1), sm2.multiply(sm2.getG(), k2));
+            Assert.assertEquals(expected, sm2.multiplyAdd(k1, q, k2, sm2.getG()));
+            // 基点使用缓存的宽窗口表
+            Assert.assertEquals(expected, sm2.multiplyAdd(k2, sm2.getG(), k1, q));
+            Assert.assertEquals(sm2.negate(expected), sm2.multiplyAdd(k1.negate(), q, k2.negate(), sm2.getG()));
+        }
+        BigInteger k = new BigInteger(256, random);
+        Assert.assertEquals(sm2.multiply(q, k), sm2.multiplyAdd(k, q, BigInteger.ZERO, sm2.getG()));
+        Assert.assertEquals(sm2.multiply(q, k), sm2.multiplyAdd(BigInteger.TEN, ECPoint.INFINITY, k, q));
+        Assert.assertTrue(sm2.multiplyAdd(k, q, k, sm2.negate(q)).isInfinity());
+
+        // 阶为 5 的点无法构建奇数倍点表
+        ECOverFP ec = new ECOverFP(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97));
+        ECPoint p = new ECPoint(BigInteger.valueOf(3), BigInteger.valueOf(6));
+        for (int i = 0; i < 7; i++) {
+            for (int j = 0; j < 7; j++) {
+                BigInteger k1 = BigInteger.valueOf(i);
+                BigInteger k2 = BigInteger.valueOf(j);
+                Assert.assertEquals(ec.multiply(p, k1.add(k2)), ec.multiplyAdd(k1, p, k2, p));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalWidth() {
+        new ECOverFP(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(97)).setWNafWidth(7);
+    }
 }
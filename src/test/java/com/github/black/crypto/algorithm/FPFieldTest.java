@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.algorithm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FPFieldTest {
+
+    private static final BigInteger SM2_P = SM2.SPEC.getP();
+
+    /**
+     * 与大数运算的结果逐一对比
+     */
+    private void check(FPField f) {
+        BigInteger p = f.getP();
+        Random random = new Random(20210101);
+        List<BigInteger> values = new ArrayList<>();
+        values.add(BigInteger.ZERO);
+        values.add(BigInteger.ONE);
+        values.add(p.subtract(BigInteger.ONE));
+        values.add(p.subtract(BigInteger.valueOf(2)));
+        values.add(p.shiftRight(1));
+        for (int i = 0; i < 200; i++) {
+            values.add(new BigInteger(p.bitLength(), random).mod(p));
+        }
+        int[] x = f.create(), y = f.create(), z = f.create();
+        for (int i = 0; i < values.size(); i++) {
+            BigInteger a = values.get(i);
+            BigInteger b = values.get((i * 7 + 3) % values.size());
+            f.fromBigInteger(a, x);
+            f.fromBigInteger(b, y);
+            Assert.assertEquals(a, f.toBigInteger(x));
+
+            f.multiply(x, y, z);
+            Assert.assertEquals(a.multiply(b).mod(p), f.toBigInteger(z));
+            f.square(x, z);
+            Assert.assertEquals(a.multiply(a).mod(p), f.toBigInteger(z));
+            f.add(x, y, z);
+            Assert.assertEquals(a.add(b).mod(p), f.toBigInteger(z));
+            f.subtract(x, y, z);
+            Assert.assertEquals(a.subtract(b).mod(p), f.toBigInteger(z));
+            f.negate(x, z);
+            Assert.assertEquals(a.negate().mod(p), f.toBigInteger(z));
+            if (a.signum() != 0) {
+                f.invert(x, z);
+                Assert.assertEquals(a.modInverse(p), f.toBigInteger(z));
+            }
+            // 平方根,与欧拉判别法的结果对比
+            boolean residue = a.signum() == 0 || a.modPow(p.shiftRight(1), p).equals(BigInteger.ONE);
+            Assert.assertEquals(residue, f.sqrt(x, z));
+            if (residue) {
+                f.square(z, z);
+                Assert.assertEquals(a, f.toBigInteger(z));
+            }
+            // 结果与输入为同一数组
+            f.multiply(x, y, x);
+            Assert.assertEquals(a.multiply(b).mod(p), f.toBigInteger(x));
+        }
+    }
+
+    @Test
+    public void testSM2Field() {
+        FPField f = FPField.of(SM2_P);
+        Assert.assertTrue(f instanceof SM2Field);
+        check(f);
+    }
+
+    @Test
+    public void testMontgomeryField() {
+        // SM2Test 中的测试曲线
+        BigInteger p = new BigInteger("8542D69E4C044F18E8B92435BF6FF7DE457283915C45517D722EDB8B08F1DFC3", 16);
+        FPField f = FPField.of(p);
+        Assert.assertTrue(f instanceof MontgomeryField);
+        check(f);
+        check(new MontgomeryField(SM2_P));
+        check(new MontgomeryField(BigInteger.valueOf(97)));
+        // P-521 的素数超出上限,使用通用实现
+        BigInteger p521 = BigInteger.ONE.shiftLeft(521).subtract(BigInteger.ONE);
+        Assert.assertTrue(FPField.of(p521) instanceof BigIntegerField);
+        // 512 bit 素数
+        check(new MontgomeryField(BigInteger.ONE.shiftLeft(511).nextProbablePrime()));
+    }
+
+    @Test
+    public void testBigIntegerField() {
+        check(new BigIntegerField(SM2_P));
+        check(new BigIntegerField(BigInteger.valueOf(97)));
+    }
+
+    @Test
+    public void testOrder() {
+        Assert.assertTrue(SM2.SPEC.multiplyG(SM2.SPEC.getN()).isInfinity());
+        BigInteger k = new BigInteger("6CB28D99385C175C94F94E934817663FC176D925DD72B727260DBAAE1FB2F96F", 16);
+        ECPoint p = SM2.SPEC.multiplyG(k);
+        SM2.SPEC.checkPoint(p);
+        Assert.assertEquals(p, SM2.SPEC.multiplyG(k.add(SM2.SPEC.getN())));
+    }
+}
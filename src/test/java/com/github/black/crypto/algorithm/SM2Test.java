@@ -24,7 +24,11 @@ import org.junit.Test;
 
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 public class SM2Test {
 
@@ -79,6 +83,59 @@ public class SM2Test {
         assertHexEquals("F4A38489E32B45B6F876E3AC2168CA392362DC8F23459C1D1146FC3DBFB7BC9A", z);
     }
 
+    @Test
+    public void testZCache() {
+        BigInteger d = new BigInteger("128B2FA8BD433C6C068C8D803DFF79792A519A55171B1B650C23661D15897263", 16);
+        ECPoint pa = SM2.multiplyG(d);
+        byte[] id = ID_A.clone();
+        byte[] z = SM2.generateZ(id, pa);
+        // 修改返回值与传入的标识均不影响缓存
+        z[0] ^= 1;
+        id[0] ^= 1;
+        assertHexEquals("F4A38489E32B45B6F876E3AC2168CA392362DC8F23459C1D1146FC3DBFB7BC9A", SM2.generateZ(ID_A, pa));
+        Assert.assertFalse(Arrays.equals(SM2.generateZ(ID_A, pa), SM2.generateZ(id, pa)));
+        // 默认用户标识从中间状态开始计算,结果与逐字节计算一致
+        byte[] defaultId = "1234567812345678".getBytes(StandardCharsets.US_ASCII);
+        SM2 spec = com.github.black.crypto.algorithm.SM2.SPEC;
+        ECPoint p = spec.multiplyG(d);
+        SM3Digest sm3 = new SM3Digest();
+        sm3.update(new byte[]{0, (byte) 128});
+        sm3.update(defaultId);
+        sm3.update(new BigInteger("FFFFFFFEFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF00000000FFFFFFFFFFFFFFFC", 16).toByteArray());
+        sm3.update(new BigInteger("28E9FA9E9D9F5E344D5A9E4BCF6509A7F39789F515AB8F92DDBCBD414D940E93", 16).toByteArray());
+        sm3.update(spec.getG().getX().toByteArray());
+        sm3.update(spec.getG().getY().toByteArray());
+        sm3.update(p.getX().toByteArray());
+        sm3.update(p.getY().toByteArray());
+        byte[] expected = sm3.digest();
+        Assert.assertArrayEquals(expected, spec.generateZ(defaultId, p));
+        Assert.assertArrayEquals(expected, spec.generateZ(defaultId, p));
+    }
+
+    @Test
+    public void testGenerateKeyPairs() {
+        List<byte[]> ids = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            ids.add(("user" + i).getBytes(StandardCharsets.US_ASCII));
+        }
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (SM2 sm2 : new SM2[]{SM2, com.github.black.crypto.algorithm.SM2.SPEC}) {
+                List<SM2KeyPair> keyPairs = sm2.generateKeyPairs(ids, pool);
+                Assert.assertEquals(ids.size(), keyPairs.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    SM2KeyPair keyPair = keyPairs.get(i);
+                    Assert.assertSame(ids.get(i), keyPair.getId());
+                    Assert.assertEquals(sm2.multiplyG(keyPair.getPrivateKey()), keyPair.getPublicKey());
+                    Assert.assertArrayEquals(sm2.generateZ(ids.get(i), keyPair.getPublicKey()), keyPair.getZ());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertTrue(SM2.generateKeyPairs(new ArrayList<>()).isEmpty());
+    }
+
     /**
      * http://www.gmbz.org.cn/main/viewfile/20180108023346264349.html
      * <p>
@@ -16,13 +16,28 @@
 
 package com.github.black.crypto.digests;
 
+import com.github.black.crypto.GMProvider;
 import com.github.black.crypto.GMUtil;
 import com.github.black.crypto.util.Hex;
+import com.github.black.crypto.util.PackUtil;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Random;
 
 public class SM3DigestsTest {
 
@@ -73,4 +88,208 @@ public class SM3DigestsTest {
         assertHexEquals("DEBE9FF92275B8A138604889C18E5A4D6FDB70E5387E5765293DCBA39C0C5732", sm3.digest());
     }
 
+    @Test
+    public void testUpdateOffset() {
+        Random random = new Random(3);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        SM3Digest sm3 = new SM3Digest();
+        for (int len : new int[]{0, 1, 55, 56, 63, 64, 65, 127, 128, 200, 1000}) {
+            // 逐字节更新的结果作为参照
+            for (int i = 0; i < len; i++) {
+                sm3.update(data[i]);
+            }
+            byte[] expected = sm3.digest();
+            // 整体更新
+            sm3.update(data, 0, len);
+            Assert.assertArrayEquals(expected, sm3.digest());
+            // 带偏移量的分段更新
+            byte[] padded = new byte[len + 7];
+            System.arraycopy(data, 0, padded, 7, len);
+            for (int i = 0; i < 10; i++) {
+                int offset = 7;
+                while (offset < len + 7) {
+                    int n = Math.min(random.nextInt(150), len + 7 - offset);
+                    sm3.update(padded, offset, n);
+                    offset += n;
+                }
+                Assert.assertArrayEquals(expected, sm3.digest());
+            }
+        }
+    }
+
+    @Test
+    public void testClone() throws Exception {
+        byte[] prefix = "prefix-".getBytes(StandardCharsets.US_ASCII);
+        SM3Digest sm3 = new SM3Digest();
+        sm3.update(prefix);
+        SM3Digest copy = sm3.clone();
+        SM3Digest cloned = (SM3Digest) MessageDigest.getInstance("SM3", new GMProvider()).clone();
+        cloned.update(prefix);
+        MessageDigest byOid = MessageDigest.getInstance("1.2.156.10197.1.401", new GMProvider());
+        byOid.update(prefix);
+        sm3.update("abc".getBytes(StandardCharsets.US_ASCII));
+        copy.update("xyz".getBytes(StandardCharsets.US_ASCII));
+        Assert.assertArrayEquals(GMUtil.sm3(prefix, "abc".getBytes(StandardCharsets.US_ASCII)), sm3.digest());
+        Assert.assertArrayEquals(GMUtil.sm3(prefix, "xyz".getBytes(StandardCharsets.US_ASCII)), copy.digest());
+        Assert.assertArrayEquals(GMUtil.sm3(prefix), cloned.digest());
+        Assert.assertArrayEquals(GMUtil.sm3(prefix), byOid.digest());
+    }
+
+    @Test
+    public void testState() {
+        Random random = new Random(5);
+        byte[] data = new byte[300];
+        random.nextBytes(data);
+        SM3Digest sm3 = new SM3Digest();
+        for (int len : new int[]{0, 3, 32, 63, 64, 65, 130, 300}) {
+            sm3.update(data, 0, len);
+            byte[] state = sm3.getState();
+            Assert.assertEquals(40 + len % 64, state.length);
+            byte[] expected = sm3.digest();
+            // 在新的实例中恢复并继续输入
+            SM3Digest other = new SM3Digest();
+            other.update((byte) 1);
+            other.setState(state);
+            Assert.assertArrayEquals(expected, other.digest());
+            other.setState(state);
+            other.update(data, 0, 10);
+            sm3.update(data, 0, len);
+            sm3.update(data, 0, 10);
+            Assert.assertArrayEquals(sm3.digest(), other.digest());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalState() {
+        SM3Digest sm3 = new SM3Digest();
+        sm3.update(new byte[10]);
+        byte[] state = sm3.getState();
+        sm3.setState(Arrays.copyOf(state, state.length - 1));
+    }
+
+    @Test
+    public void testHashAll() {
+        Random random = new Random(14);
+        for (int count : new int[]{0, 1, 2, 3, 17}) {
+            byte[][] messages = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                // 覆盖填充后为一个、两个分组等各种长度
+                messages[i] = new byte[random.nextInt(3) == 0 ? 55 + random.nextInt(10) : random.nextInt(600)];
+                random.nextBytes(messages[i]);
+            }
+            byte[][] digests = GMUtil.hashAll(messages);
+            Assert.assertEquals(count, digests.length);
+            for (int i = 0; i < count; i++) {
+                Assert.assertArrayEquals(GMUtil.sm3(messages[i]), digests[i]);
+            }
+        }
+        assertHexEquals(
+                "66c7f0f462eeedd9d1f2d46bdc10e4e24167c4875cf2f7a2297da02b8f4ba8e0",
+                GMUtil.hashAll(new byte[][]{new byte[0], "abc".getBytes(StandardCharsets.US_ASCII)})[1]
+        );
+    }
+
+    @Test
+    public void testByteBuffer() {
+        Random random = new Random(17);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        SM3Digest sm3 = new SM3Digest();
+        for (int len : new int[]{0, 1, 63, 64, 130, 1000}) {
+            byte[] expected = GMUtil.sm3(Arrays.copyOf(data, len));
+            ByteBuffer direct = ByteBuffer.allocateDirect(len + 3);
+            direct.put(new byte[3]).put(data, 0, len);
+            ByteBuffer[] buffers = {
+                    ByteBuffer.wrap(data, 0, len),
+                    // 底层数组带偏移量的切片
+                    ((ByteBuffer) ByteBuffer.allocate(len + 5).position(5)).slice().put(data, 0, len),
+                    ByteBuffer.wrap(data, 0, len).asReadOnlyBuffer(),
+                    ((ByteBuffer) direct.position(3)).slice(),
+                    ((ByteBuffer) direct.position(3)).slice().order(ByteOrder.LITTLE_ENDIAN),
+            };
+            for (ByteBuffer buffer : buffers) {
+                buffer.position(0).limit(len);
+                // 先输入 1 个字节,使后续输入不与分组对齐
+                if (len > 0) {
+                    sm3.update(buffer.get());
+                }
+                sm3.update(buffer);
+                Assert.assertEquals(len, buffer.position());
+                Assert.assertArrayEquals(expected, sm3.digest());
+            }
+        }
+    }
+
+    @Test
+    public void testKdf() {
+        Random random = new Random(19);
+        byte[] x = new byte[32];
+        byte[] y = new byte[33];
+        random.nextBytes(x);
+        random.nextBytes(y);
+        for (int k : new int[]{0, 1, 32, 33, 100}) {
+            // 按定义逐个计数器计算
+            byte[] expected = new byte[k];
+            for (int ct = 1; (ct - 1) * 32 < k; ct++) {
+                byte[] counter = new byte[4];
+                PackUtil.intToBigEndian(ct, counter, 0);
+                byte[] ha = GMUtil.sm3(x, y, counter);
+                System.arraycopy(ha, 0, expected, (ct - 1) * 32, Math.min(32, k - (ct - 1) * 32));
+            }
+            SM3Kdf kdf = new SM3Kdf(x, y);
+            Assert.assertArrayEquals(expected, kdf.generate(k));
+            byte[] out = new byte[k + 2];
+            kdf.generate(out, 2, k);
+            Assert.assertArrayEquals(expected, Arrays.copyOfRange(out, 2, k + 2));
+            // 原地异或
+            byte[] msg = new byte[k];
+            random.nextBytes(msg);
+            byte[] buf = msg.clone();
+            kdf.xor(buf, 0, buf, 0, k);
+            for (int i = 0; i < k; i++) {
+                Assert.assertEquals((byte) (msg[i] ^ expected[i]), buf[i]);
+            }
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFiles() throws Exception {
+        Random random = new Random(16);
+        List<Path> paths = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        // 空文件、直接读取的小文件、多次读取的文件以及内存映射的大文件
+        for (int size : new int[]{0, 100, 200_000, 3_000_000}) {
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+            Path path = folder.newFile().toPath();
+            Files.write(path, content);
+            paths.add(path);
+            contents.add(content);
+            Assert.assertArrayEquals(GMUtil.sm3(content), GMUtil.sm3(path));
+        }
+        Path missing = folder.getRoot().toPath().resolve("missing");
+        paths.add(1, missing);
+        // 重复的路径各自保留一项
+        paths.add(paths.get(2));
+        FileHashResult result = GMUtil.sm3All(paths, 2);
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertEquals(paths, result.getPaths());
+        Assert.assertEquals(paths.size(), result.size());
+        Assert.assertEquals(1, result.getFailureCount());
+        Assert.assertNull(result.getDigest(1));
+        Assert.assertTrue(result.getFailure(1) instanceof IOException);
+        Assert.assertEquals(3_200_200, result.getBytes());
+        Assert.assertTrue(result.getThroughput() > 0);
+        for (int i = 0; i < contents.size(); i++) {
+            int index = i == 0 ? 0 : i + 1;
+            Assert.assertNull(result.getFailure(index));
+            Assert.assertArrayEquals(GMUtil.sm3(contents.get(i)), result.getDigest(index));
+        }
+        Assert.assertArrayEquals(GMUtil.sm3(contents.get(1)), result.getDigests().get(paths.size() - 1));
+        Assert.assertTrue(GMUtil.sm3All(Collections.emptyList()).isSuccess());
+    }
 }
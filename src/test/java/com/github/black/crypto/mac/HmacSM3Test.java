@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.mac;
+
+import com.github.black.crypto.GMProvider;
+import com.github.black.crypto.util.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class HmacSM3Test {
+
+    private static final GMProvider PROVIDER = new GMProvider();
+
+    private static byte[] range(int len) {
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static byte[] repeat(char c, int len) {
+        byte[] bytes = new byte[len];
+        Arrays.fill(bytes, (byte) c);
+        return bytes;
+    }
+
+    private static void assertHexEquals(String hex, byte[] bytes) {
+        Assert.assertEquals(hex.toUpperCase(Locale.ROOT), Hex.encodeHex(bytes).toUpperCase(Locale.ROOT));
+    }
+
+    @Test
+    public void testMac() throws Exception {
+        Mac mac = Mac.getInstance("HmacSM3", PROVIDER);
+        Assert.assertEquals(32, mac.getMacLength());
+        mac.init(new SecretKeySpec("key".getBytes(StandardCharsets.US_ASCII), "HmacSM3"));
+        assertHexEquals("bd4a34077888162b210645b8ebf74b9af357303789357a27c7fc457244ebd398",
+                mac.doFinal("The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII)));
+        // 长度恰为一个分组的秘钥
+        mac.init(new SecretKeySpec(range(64), "HmacSM3"));
+        assertHexEquals("14ccadbee92a9be279c849b7359fafac65a9f04b156fa8723a72700e506927d5",
+                mac.doFinal("abc".getBytes(StandardCharsets.US_ASCII)));
+        // 超过一个分组的秘钥先做杂凑
+        Mac byOid = Mac.getInstance("1.2.156.10197.1.401.2", PROVIDER);
+        byOid.init(new SecretKeySpec(range(100), "HmacSM3"));
+        assertHexEquals("63da9f29b1c97d1440b90085eeeee118f0f67810ae44c8af6337be5df28c2ac5", byOid.doFinal());
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        String expected = "5d02b042fde29696157ec7358c4366581c480bf371b60d65e7d29fe25ddaed8a";
+        byte[] msg = repeat('x', 200);
+        SecretKeySpec key = new SecretKeySpec(repeat('k', 20), "HmacSM3");
+        Mac mac = Mac.getInstance("HmacSM3", PROVIDER);
+        mac.init(key);
+        for (int i = 0; i < 3; i++) {
+            mac.update(msg, 0, 7);
+            mac.update(ByteBuffer.wrap(msg, 7, 100).asReadOnlyBuffer());
+            Mac copy = (Mac) mac.clone();
+            mac.update(msg, 107, 93);
+            assertHexEquals(expected, mac.doFinal());
+            copy.update(msg, 107, 93);
+            assertHexEquals(expected, copy.doFinal());
+        }
+        // reset 丢弃已输入的消息
+        mac.update(msg);
+        mac.reset();
+        assertHexEquals(expected, mac.doFinal(msg));
+        // 使用相同或不同的秘钥重新初始化
+        mac.init(new SecretKeySpec(repeat('k', 20), "HmacSM3"));
+        assertHexEquals(expected, mac.doFinal(msg));
+        mac.init(new SecretKeySpec("key".getBytes(StandardCharsets.US_ASCII), "HmacSM3"));
+        assertHexEquals("bd4a34077888162b210645b8ebf74b9af357303789357a27c7fc457244ebd398",
+                mac.doFinal("The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII)));
+        // 重新初始化为超过一个分组的秘钥
+        mac.init(new SecretKeySpec(range(100), "HmacSM3"));
+        assertHexEquals("63da9f29b1c97d1440b90085eeeee118f0f67810ae44c8af6337be5df28c2ac5", mac.doFinal());
+    }
+
+    @Test(expected = InvalidAlgorithmParameterException.class)
+    public void testIllegalParameter() throws Exception {
+        Mac mac = Mac.getInstance("HmacSM3", PROVIDER);
+        mac.init(new SecretKeySpec(range(16), "HmacSM3"), new AlgorithmParameterSpec() {
+        });
+    }
+}
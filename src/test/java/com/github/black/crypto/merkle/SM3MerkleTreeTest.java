@@ -0,0 +1,178 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.merkle;
+
+import com.github.black.crypto.GMUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SM3MerkleTreeTest {
+
+    /**
+     * 按 RFC 6962 的递归定义计算根
+     */
+    private static byte[] mth(List<byte[]> data, int lo, int hi) {
+        if (hi == lo) {
+            return GMUtil.sm3(new byte[0]);
+        }
+        if (hi - lo == 1) {
+            return GMUtil.sm3(new byte[]{0x00}, data.get(lo));
+        }
+        int k = Integer.highestOneBit(hi - lo - 1);
+        return GMUtil.sm3(new byte[]{0x01}, mth(data, lo, lo + k), mth(data, lo + k, hi));
+    }
+
+    private static List<byte[]> randomData(Random random, int count) {
+        List<byte[]> data = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[random.nextInt(100)];
+            random.nextBytes(bytes);
+            data.add(bytes);
+        }
+        return data;
+    }
+
+    @Test
+    public void testRoot() {
+        List<byte[]> data = randomData(new Random(15), 40);
+        SM3MerkleTree tree = new SM3MerkleTree();
+        Assert.assertArrayEquals(mth(data, 0, 0), tree.root());
+        for (int i = 0; i < data.size(); i++) {
+            Assert.assertEquals(i, tree.append(data.get(i)));
+            Assert.assertArrayEquals(mth(data, 0, i + 1), tree.root());
+        }
+        for (int i = 0; i <= data.size(); i++) {
+            Assert.assertArrayEquals(mth(data, 0, i), tree.root(i));
+        }
+        Assert.assertArrayEquals(SM3MerkleTree.leafHash(data.get(7)), tree.leafHash(7));
+    }
+
+    @Test
+    public void testAppendAll() {
+        List<byte[]> data = randomData(new Random(16), 3000);
+        SM3MerkleTree sequential = new SM3MerkleTree();
+        for (byte[] bytes : data) {
+            sequential.append(bytes);
+        }
+        SM3MerkleTree parallel = new SM3MerkleTree();
+        parallel.append(data.get(0));
+        parallel.appendAll(data.subList(1, 777));
+        parallel.appendAll(data.subList(777, 3000));
+        Assert.assertEquals(3000, parallel.size());
+        Assert.assertArrayEquals(sequential.root(), parallel.root());
+        Assert.assertArrayEquals(mth(data, 0, 1000), parallel.root(1000));
+        Assert.assertArrayEquals(sequential.inclusionProof(1234), parallel.inclusionProof(1234));
+    }
+
+    @Test
+    public void testInclusionProof() {
+        List<byte[]> data = randomData(new Random(17), 20);
+        SM3MerkleTree tree = new SM3MerkleTree();
+        tree.appendAll(data);
+        for (int size = 1; size <= data.size(); size++) {
+            byte[] root = tree.root(size);
+            for (int index = 0; index < size; index++) {
+                byte[][] proof = tree.inclusionProof(index, size);
+                byte[] leaf = tree.leafHash(index);
+                Assert.assertTrue(SM3MerkleTree.verifyInclusion(leaf, index, size, proof, root));
+                if (size > 1) {
+                    Assert.assertFalse(SM3MerkleTree.verifyInclusion(leaf, (index + 1) % size, size, proof, root));
+                    byte[][] tampered = proof.clone();
+                    tampered[0] = tampered[0].clone();
+                    tampered[0][0] ^= 1;
+                    Assert.assertFalse(SM3MerkleTree.verifyInclusion(leaf, index, size, tampered, root));
+                    Assert.assertFalse(SM3MerkleTree.verifyInclusion(leaf, index, size, Arrays.copyOf(proof, proof.length - 1), root));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConsistencyProof() {
+        List<byte[]> data = randomData(new Random(18), 20);
+        SM3MerkleTree tree = new SM3MerkleTree();
+        tree.appendAll(data);
+        for (int newSize = 0; newSize <= data.size(); newSize++) {
+            byte[] newRoot = tree.root(newSize);
+            for (int oldSize = 0; oldSize <= newSize; oldSize++) {
+                byte[] oldRoot = tree.root(oldSize);
+                byte[][] proof = tree.consistencyProof(oldSize, newSize);
+                Assert.assertTrue(SM3MerkleTree.verifyConsistency(oldSize, newSize, oldRoot, newRoot, proof));
+                if (oldSize > 0 && oldSize < newSize) {
+                    Assert.assertFalse(SM3MerkleTree.verifyConsistency(oldSize, newSize, newRoot, newRoot, proof));
+                    byte[][] tampered = proof.clone();
+                    tampered[proof.length - 1] = tampered[proof.length - 1].clone();
+                    tampered[proof.length - 1][5] ^= 1;
+                    Assert.assertFalse(SM3MerkleTree.verifyConsistency(oldSize, newSize, oldRoot, newRoot, tampered));
+                }
+            }
+        }
+        Assert.assertEquals(0, tree.consistencyProof(data.size()).length);
+    }
+
+    /**
+     * 将 hash 截短或在末尾追加一个字节
+     */
+    private static byte[] resize(byte[] hash, int delta) {
+        return Arrays.copyOf(hash, hash.length + delta);
+    }
+
+    private static byte[][] resizeNode(byte[][] proof, int i, int delta) {
+        byte[][] rst = proof.clone();
+        rst[i] = resize(rst[i], delta);
+        return rst;
+    }
+
+    @Test
+    public void testMalformedProof() {
+        SM3MerkleTree tree = new SM3MerkleTree();
+        tree.appendAll(randomData(new Random(19), 20));
+        byte[] root = tree.root(13);
+        byte[] leaf = tree.leafHash(5);
+        byte[][] proof = tree.inclusionProof(5, 13);
+        Assert.assertTrue(SM3MerkleTree.verifyInclusion(leaf, 5, 13, proof, root));
+        for (int delta : new int[]{-1, 1}) {
+            Assert.assertFalse(SM3MerkleTree.verifyInclusion(resize(leaf, delta), 5, 13, proof, root));
+            Assert.assertFalse(SM3MerkleTree.verifyInclusion(leaf, 5, 13, proof, resize(root, delta)));
+            for (int i = 0; i < proof.length; i++) {
+                Assert.assertFalse(SM3MerkleTree.verifyInclusion(leaf, 5, 13, resizeNode(proof, i, delta), root));
+            }
+        }
+        byte[] oldRoot = tree.root(5);
+        byte[][] consistency = tree.consistencyProof(5, 13);
+        Assert.assertTrue(SM3MerkleTree.verifyConsistency(5, 13, oldRoot, root, consistency));
+        for (int delta : new int[]{-1, 1}) {
+            Assert.assertFalse(SM3MerkleTree.verifyConsistency(5, 13, resize(oldRoot, delta), root, consistency));
+            Assert.assertFalse(SM3MerkleTree.verifyConsistency(5, 13, oldRoot, resize(root, delta), consistency));
+            for (int i = 0; i < consistency.length; i++) {
+                Assert.assertFalse(SM3MerkleTree.verifyConsistency(5, 13, oldRoot, root, resizeNode(consistency, i, delta)));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalSize() {
+        SM3MerkleTree tree = new SM3MerkleTree();
+        tree.append(new byte[1]);
+        tree.inclusionProof(0, 2);
+    }
+}
@@ -16,13 +16,21 @@
 
 package com.github.black.crypto.signer;
 
+import com.github.black.crypto.GMUtil;
 import com.github.black.crypto.algorithm.ECPoint;
+import com.github.black.crypto.algorithm.PrecomputeCache;
 import com.github.black.crypto.algorithm.SM2;
 import com.github.black.crypto.algorithm.SM2KeyPair;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SM2SignerTest {
 
@@ -48,4 +56,194 @@ public class SM2SignerTest {
         byte[] ez = SM2.SPEC.generateZ("other".getBytes(StandardCharsets.UTF_8), p);
         Assert.assertFalse(signer.verify(p, ez, s, msg));
     }
+
+    @Test
+    public void testCachedVerify() {
+        byte[] msg = "Hello!".getBytes(StandardCharsets.UTF_8);
+        SM2Signer plain = new SM2Signer(SM2.SPEC);
+        for (boolean direct : new boolean[]{false, true}) {
+            // 只能容纳一张表,首次使用即构建,交替验证两个公钥时会不断淘汰
+            PrecomputeCache cache = new PrecomputeCache(SM2.SPEC, 100 << 10, direct, 1);
+            SM2Signer signer = new SM2Signer(SM2.SPEC, cache);
+            SM2KeyPair[] keys = {SM2.SPEC.generateKeyPair(ID_A), SM2.SPEC.generateKeyPair(ID_A)};
+            for (int i = 0; i < 6; i++) {
+                SM2KeyPair skp = keys[i % 2];
+                Signature s = plain.sign(skp, msg);
+                Assert.assertTrue(signer.verify(skp.getPublicKey(), skp.getZ(), s, msg));
+                Assert.assertFalse(signer.verify(skp.getPublicKey(), skp.getZ(), s, "Hi there!".getBytes(StandardCharsets.UTF_8)));
+                Assert.assertFalse(signer.verify(keys[(i + 1) % 2].getPublicKey(), skp.getZ(), s, msg));
+                Assert.assertEquals(1, cache.size());
+                Assert.assertTrue(cache.byteSize() <= 100 << 10);
+            }
+        }
+    }
+
+    @Test
+    public void testCacheAdmission() {
+        byte[] msg = "Hello!".getBytes(StandardCharsets.UTF_8);
+        PrecomputeCache cache = new PrecomputeCache(SM2.SPEC);
+        Assert.assertEquals(PrecomputeCache.DEFAULT_ADMIT_AFTER, cache.getAdmitAfter());
+        SM2Signer signer = new SM2Signer(SM2.SPEC, cache);
+        SM2KeyPair skp = SM2.SPEC.generateKeyPair(ID_A);
+        Signature s = signer.sign(skp, msg);
+        // 达到构建次数前直接计算
+        for (int i = 1; i < PrecomputeCache.DEFAULT_ADMIT_AFTER; i++) {
+            Assert.assertTrue(signer.verify(skp.getPublicKey(), skp.getZ(), s, msg));
+            Assert.assertEquals(0, cache.size());
+        }
+        Assert.assertTrue(signer.verify(skp.getPublicKey(), skp.getZ(), s, msg));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(signer.verify(skp.getPublicKey(), skp.getZ(), s, msg));
+        // 预加载不受构建次数的限制
+        SM2KeyPair other = SM2.SPEC.generateKeyPair(ID_A);
+        cache.preload(other.getPublicKey());
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(signer.verify(other.getPublicKey(), other.getZ(), signer.sign(other, msg), msg));
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalAdmitAfter() {
+        new PrecomputeCache(SM2.SPEC, PrecomputeCache.DEFAULT_MAX_BYTES, false, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCacheOfAnotherCurve() {
+        SM2 sm2 = new SM2(SM2.SPEC.getA(), SM2.SPEC.getB(), SM2.SPEC.getP(),
+                SM2.SPEC.getG().getX(), SM2.SPEC.getG().getY(), SM2.SPEC.getN(), SM2.SPEC.getH());
+        new SM2Signer(SM2.SPEC, new PrecomputeCache(sm2));
+    }
+
+    @Test
+    public void testVerifyAll() {
+        SM2Signer signer = new SM2Signer(SM2.SPEC);
+        SM2KeyPair[] keys = {SM2.SPEC.generateKeyPair(ID_A), SM2.SPEC.generateKeyPair(ID_A), SM2.SPEC.generateKeyPair(ID_A)};
+        List<VerifyRequest> requests = new ArrayList<>();
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 40; i++) {
+            SM2KeyPair skp = keys[i % keys.length];
+            byte[] msg = ("message " + i).getBytes(StandardCharsets.UTF_8);
+            Signature s = signer.sign(skp, msg);
+            switch (i % 5) {
+                case 1:
+                    // 消息不一致
+                    requests.add(new VerifyRequest(skp.getPublicKey(), skp.getZ(), s, "other".getBytes(StandardCharsets.UTF_8)));
+                    break;
+                case 3:
+                    // s 超出范围
+                    requests.add(new VerifyRequest(skp.getPublicKey(), skp.getZ(), new Signature(s.getR(), SM2.SPEC.getN()), msg));
+                    break;
+                default:
+                    requests.add(new VerifyRequest(skp.getPublicKey(), skp.getZ(), s, msg));
+                    expected.set(i);
+            }
+        }
+        Assert.assertEquals(expected, signer.verifyAll(requests));
+        Assert.assertFalse(signer.verifyAllValid(requests));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Assert.assertEquals(expected, signer.verifyAll(requests, executor));
+            List<VerifyRequest> valid = new ArrayList<>();
+            for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1)) {
+                valid.add(requests.get(i));
+            }
+            Assert.assertTrue(signer.verifyAllValid(valid, executor));
+            Assert.assertEquals(valid.size(), signer.verifyAll(valid, executor).cardinality());
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(signer.verifyAll(new ArrayList<>()).isEmpty());
+        Assert.assertTrue(signer.verifyAllValid(new ArrayList<>()));
+        Assert.assertFalse(signer.verify(keys[0].getPublicKey(), keys[0].getZ(),
+                new Signature(BigInteger.ZERO, BigInteger.ONE), "message 0".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testNoncePool() throws Exception {
+        SM2KeyPair skp = SM2.SPEC.generateKeyPair(ID_A);
+        SM2Signer plain = new SM2Signer(SM2.SPEC);
+        try (NoncePool pool = new NoncePool(SM2.SPEC, 8).start()) {
+            SM2Signer signer = new SM2Signer(SM2.SPEC, null, pool);
+            for (int i = 0; i < 500 && pool.size() < pool.getCapacity(); i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(8, pool.size());
+            // 超过容量的签名会用尽池,之后即时计算
+            for (int i = 0; i < 20; i++) {
+                byte[] msg = ("msg" + i).getBytes(StandardCharsets.UTF_8);
+                Signature s = signer.sign(skp, msg);
+                Assert.assertTrue(plain.verify(skp.getPublicKey(), skp.getZ(), s, msg));
+            }
+            pool.close();
+            Assert.assertEquals(0, pool.size());
+            byte[] msg = "closed".getBytes(StandardCharsets.UTF_8);
+            Assert.assertTrue(plain.verify(skp.getPublicKey(), skp.getZ(), signer.sign(skp, msg), msg));
+        }
+    }
+
+    @Test
+    public void testNoncePoolQuiet() throws Exception {
+        SM2KeyPair skp = SM2.SPEC.generateKeyPair(ID_A);
+        SM2Signer plain = new SM2Signer(SM2.SPEC);
+        try (NoncePool pool = new NoncePool(SM2.SPEC, 4, 60_000)) {
+            SM2Signer signer = new SM2Signer(SM2.SPEC, null, pool);
+            // 未启动时即时计算
+            byte[] msg = "not started".getBytes(StandardCharsets.UTF_8);
+            Assert.assertTrue(plain.verify(skp.getPublicKey(), skp.getZ(), signer.sign(skp, msg), msg));
+            Assert.assertEquals(0, pool.size());
+            // 启动时立即补充,不受静默时间限制
+            pool.start();
+            for (int i = 0; i < 500 && pool.size() < pool.getCapacity(); i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(4, pool.size());
+            for (int i = 0; i < 4; i++) {
+                msg = ("msg" + i).getBytes(StandardCharsets.UTF_8);
+                Assert.assertTrue(plain.verify(skp.getPublicKey(), skp.getZ(), signer.sign(skp, msg), msg));
+            }
+            // 静默时间内不补充
+            Thread.sleep(100);
+            Assert.assertEquals(0, pool.size());
+            pool.refill();
+            for (int i = 0; i < 500 && pool.size() < pool.getCapacity(); i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(4, pool.size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoncePoolClosed() {
+        NoncePool pool = new NoncePool(SM2.SPEC, 4);
+        pool.close();
+        pool.start();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalQuiet() {
+        new NoncePool(SM2.SPEC, 4, -1);
+    }
+
+    @Test
+    public void testPreparedKey() {
+        SM2Signer signer = new SM2Signer(SM2.SPEC);
+        SM2KeyPair skp = SM2.SPEC.generateKeyPair(ID_A);
+        PreparedKey key = new PreparedKey(SM2.SPEC, skp);
+        for (int i = 0; i < 5; i++) {
+            byte[] msg = ("msg" + i).getBytes(StandardCharsets.UTF_8);
+            Signature s = signer.sign(key, msg);
+            Assert.assertTrue(signer.verify(skp.getPublicKey(), skp.getZ(), s, msg));
+            Signature h = signer.signHash(key, GMUtil.sm3(skp.getZ(), msg));
+            Assert.assertTrue(signer.verify(skp.getPublicKey(), skp.getZ(), h, msg));
+            Assert.assertFalse(signer.verify(skp.getPublicKey(), skp.getZ(), h, "other".getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalPreparedKey() {
+        SM2KeyPair skp = SM2.SPEC.generateKeyPair(ID_A);
+        BigInteger d = SM2.SPEC.getN().subtract(BigInteger.ONE);
+        new PreparedKey(SM2.SPEC, new SM2KeyPair(d, skp.getPublicKey(), skp.getId(), skp.getZ()));
+    }
 }
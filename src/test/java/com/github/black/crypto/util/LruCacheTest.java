@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LruCacheTest {
+
+    @Test
+    public void testEviction() {
+        LruCache<Integer, String> cache = new LruCache<>(3, String::length, 1);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        // 访问 1 后,最久未使用的是 2
+        Assert.assertEquals("a", cache.get(1));
+        cache.put(4, "d");
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals("a", cache.get(1));
+        Assert.assertEquals(3, cache.size());
+        // 权重为 2 的值淘汰两个条目
+        cache.put(5, "ee");
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(3, cache.weight());
+        Assert.assertEquals("a", cache.get(1));
+        // 超过容量的值不缓存
+        cache.put(6, "ffff");
+        Assert.assertNull(cache.get(6));
+        Assert.assertEquals(3, cache.weight());
+        cache.remove(1);
+        Assert.assertEquals(2, cache.weight());
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        LruCache<Integer, String> cache = new LruCache<>(100);
+        int[] calls = new int[1];
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("7", cache.computeIfAbsent(7, k -> {
+                calls[0]++;
+                return String.valueOf(k);
+            }));
+        }
+        Assert.assertEquals(1, calls[0]);
+        Assert.assertNull(cache.computeIfAbsent(8, k -> null));
+        Assert.assertEquals(1, cache.size());
+        for (int i = 0; i < 1000; i++) {
+            cache.computeIfAbsent(i, String::valueOf);
+        }
+        Assert.assertTrue(cache.size() <= 100);
+    }
+}
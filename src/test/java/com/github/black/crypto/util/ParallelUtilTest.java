@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class ParallelUtilTest {
+
+    @Test
+    public void testForEachChunk() {
+        AtomicIntegerArray counts = new AtomicIntegerArray(100);
+        ParallelUtil.forEachChunk(3, 100, 7, ForkJoinPool.commonPool(), (from, to) -> {
+            Assert.assertTrue(to - from <= 7);
+            for (int i = from; i < to; i++) {
+                counts.incrementAndGet(i);
+            }
+        });
+        // [3, 100) 中的每个下标恰好处理一次
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i < 3 ? 0 : 1, counts.get(i));
+        }
+        ParallelUtil.forEachChunk(5, 5, 7, ForkJoinPool.commonPool(), (from, to) -> Assert.fail());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testException() {
+        ParallelUtil.forEachChunk(0, 10, 2, ForkJoinPool.commonPool(), (from, to) -> {
+            if (from == 4) {
+                throw new IllegalStateException();
+            }
+        });
+    }
+}
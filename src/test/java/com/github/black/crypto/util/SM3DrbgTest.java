@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 hello.bug@foxmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.black.crypto.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class SM3DrbgTest {
+
+    private static byte[] range(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static void assertHexEquals(String hex, byte[] bytes) {
+        Assert.assertEquals(hex.toUpperCase(Locale.ROOT), Hex.encodeHex(bytes).toUpperCase(Locale.ROOT));
+    }
+
+    @Test
+    public void testKnownAnswer() {
+        SM3Drbg drbg = new SM3Drbg(range(0, 32), range(32, 48), "gm4j".getBytes(StandardCharsets.US_ASCII), false);
+        byte[] out = new byte[32];
+        drbg.generate(out, 0, 32);
+        assertHexEquals("ce78826b7aaf5b44345dcde02fb5945ae664a2bcf74e5ffa5277d03416acd739", out);
+        out = new byte[45];
+        drbg.generate(out, 0, 45);
+        assertHexEquals("e2c1d059c68fd34d17b4376160ca8f5cb2a58ed871aa613efa65d2867edc47706066d0a0e51adb5101ec9815d0", out);
+        out = new byte[100];
+        drbg.generate(out, 0, 100);
+        assertHexEquals("88f911b46caa047631238069cf35f1e64054c5c2d7b6057e60e7d52611659c637e91fdc9"
+                + "c9ba668cbe08d90c9e589f139432225e14a20ab70e7906d6f0e3d349257f7e5150c84f37acd8cb0845445c3a"
+                + "9fb1bcb3a753ce89a149a3166bd786c444fa6b0a", out);
+    }
+
+    @Test
+    public void testBuffered() {
+        SM3Drbg drbg = new SM3Drbg(range(0, 32), range(32, 48), null, false);
+        SM3Drbg expected = new SM3Drbg(range(0, 32), range(32, 48), null, false);
+        byte[] stream = new byte[512];
+        expected.generate(stream, 0, 256);
+        expected.generate(stream, 256, 256);
+        // 短请求依次取用缓冲区,跨越缓冲区边界时先用完剩余的部分
+        byte[] out = new byte[500];
+        for (int offset = 0; offset < out.length; offset += 50) {
+            byte[] part = new byte[50];
+            drbg.nextBytes(part);
+            System.arraycopy(part, 0, out, offset, 50);
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(stream, 500), out);
+        // 长请求直接生成
+        byte[] large = new byte[300];
+        drbg.nextBytes(large);
+        byte[] direct = new byte[300];
+        expected.generate(direct, 0, 300);
+        Assert.assertArrayEquals(direct, large);
+    }
+
+    @Test
+    public void testSetSeed() {
+        SM3Drbg a = new SM3Drbg(range(0, 32), range(32, 48), null, false);
+        SM3Drbg b = new SM3Drbg(range(0, 32), range(32, 48), null, false);
+        b.setSeed(1L);
+        byte[] x = new byte[32];
+        byte[] y = new byte[32];
+        a.nextBytes(x);
+        b.nextBytes(y);
+        Assert.assertNotEquals(Hex.encodeHex(x), Hex.encodeHex(y));
+    }
+
+    @Test
+    public void testNextScalar() {
+        SM3Drbg drbg = new SM3Drbg();
+        BigInteger n = BigInteger.valueOf(7);
+        boolean[] seen = new boolean[7];
+        for (int i = 0; i < 1000; i++) {
+            int k = drbg.nextScalar(n).intValueExact();
+            Assert.assertTrue(k >= 1 && k <= 6);
+            seen[k] = true;
+        }
+        for (int k = 1; k <= 6; k++) {
+            Assert.assertTrue(seen[k]);
+        }
+        BigInteger r = RandomUtil.secureRandomBigDecimal(BigInteger.TEN, BigInteger.valueOf(12));
+        Assert.assertEquals(BigInteger.valueOf(11), r);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyInterval() {
+        RandomUtil.secureRandomBigDecimal(BigInteger.ONE, BigInteger.valueOf(2));
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void testNotSerializable() throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream())) {
+            out.writeObject(new SM3Drbg());
+        }
+    }
+}